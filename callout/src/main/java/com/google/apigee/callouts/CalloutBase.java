@@ -16,6 +16,10 @@
 package com.google.apigee.callouts;
 
 import com.apigee.flow.message.MessageContext;
+import com.google.apigee.multipartform.FormException;
+import com.google.apigee.multipartform.FormIndex;
+import com.google.apigee.multipartform.MemoryBudget;
+import com.google.apigee.multipartform.PartContent;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -27,6 +31,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,6 +41,19 @@ public abstract class CalloutBase {
       Pattern.compile(variableReferencePatternString);
   private static final String commonError = "^(.+?)[:;] (.+)$";
   private static final Pattern commonErrorPattern = Pattern.compile(commonError);
+  protected static final String PART_REFERENCE_PREFIX = "part:";
+  protected static final String FORM_INDEX_VARIABLE = "mpf_form_index";
+  private static final long DEFAULT_BUDGET_WAIT_MILLIS = 1000;
+
+  // error codes set in the error_code variable, in addition to those of FormException
+  protected static final String INVALID_CONFIGURATION = "invalid_configuration";
+  protected static final String MISSING_MESSAGE = "missing_message";
+  protected static final String MISSING_CONTENT = "missing_content";
+  protected static final String UNSUPPORTED_CONTENT = "unsupported_content";
+  protected static final String UNRESOLVED_REFERENCE = "unresolved_reference";
+  protected static final String BUDGET_EXHAUSTED = "budget_exhausted";
+  protected static final String DEADLINE_EXCEEDED = "deadline_exceeded";
+  protected static final String UNEXPECTED_ERROR = "unexpected_error";
   protected Map<String, String> properties; // read-only
 
   public CalloutBase(Map properties) {
@@ -54,6 +72,27 @@ public abstract class CalloutBase {
 
   public abstract String getVarnamePrefix();
 
+  /**
+   * Warms up the engine, once per JVM, if the warm-up property is true. Called from the
+   * constructor, so the properties are read literally; warm-up-iterations, if set, is the number
+   * of round trips to run in all, the first in the constructor and the rest in the background.
+   */
+  protected void warmUpIfRequested() {
+    if (!Boolean.parseBoolean(properties.get("warm-up"))) {
+      return;
+    }
+    int iterations = 1;
+    String value = properties.get("warm-up-iterations");
+    if (value != null) {
+      try {
+        iterations = Integer.parseInt(value.trim());
+      } catch (NumberFormatException e) {
+        // a constructor cannot report errors; run just the one
+      }
+    }
+    WarmUp.start(iterations);
+  }
+
   protected String varName(String s) {
     return getVarnamePrefix() + s;
   }
@@ -75,6 +114,16 @@ public abstract class CalloutBase {
     return debug;
   }
 
+  /** An error to throw, which captures a stack trace only if debug is set. */
+  protected FormException error(String code, String message) {
+    return getDebug() ? new FormException(code, message, true) : new FormException(code, message);
+  }
+
+  /** The preallocated error, or, if debug is set, a copy with the stack trace of the caller. */
+  protected FormException error(FormException preallocated) {
+    return getDebug() ? preallocated.withStackTrace() : preallocated;
+  }
+
   protected String normalizeString(String s) {
     s = s.replaceAll("^ +", "");
     s = s.replaceAll("(\r|\n) +", "\n");
@@ -85,17 +134,20 @@ public abstract class CalloutBase {
       throws Exception {
     String value = (String) this.properties.get(propName);
     if (value == null) {
-      throw new IllegalStateException(
+      throw error(
+          INVALID_CONFIGURATION,
           String.format("configuration error: %s resolves to an empty string", propName));
     }
     value = value.trim();
     if (value.equals("")) {
-      throw new IllegalStateException(
+      throw error(
+          INVALID_CONFIGURATION,
           String.format("configuration error: %s resolves to an empty string", propName));
     }
     value = resolvePropertyValue(value, msgCtxt);
     if (value == null || value.equals("")) {
-      throw new IllegalStateException(
+      throw error(
+          INVALID_CONFIGURATION,
           String.format("configuration error: %s resolves to an empty string", propName));
     }
     return value;
@@ -139,6 +191,167 @@ public abstract class CalloutBase {
     return (sb.length() > 0) ? sb.toString() : null;
   }
 
+  /**
+   * Resolves a reference of the form "part:NAME" to the content of the named part, in the form
+   * index that MultipartFormParserV2 publishes in mode "index". The content is a slice of the
+   * parsed form; it is not copied.
+   */
+  protected PartContent resolvePartReference(String reference, MessageContext msgCtxt) {
+    Object value = msgCtxt.getVariable(FORM_INDEX_VARIABLE);
+    if (!(value instanceof FormIndex)) {
+      throw error(
+          UNRESOLVED_REFERENCE,
+          String.format("%s cannot be resolved: %s is not set", reference, FORM_INDEX_VARIABLE));
+    }
+    FormIndex index = (FormIndex) value;
+    FormIndex.Entry entry = index.get(reference.substring(PART_REFERENCE_PREFIX.length()));
+    if (entry == null) {
+      throw error(
+          UNRESOLVED_REFERENCE,
+          String.format("%s cannot be resolved: the form has no such part", reference));
+    }
+    return index.content(entry);
+  }
+
+  /**
+   * What to do when the shared memory budget cannot cover the content: "wait" (the default) for
+   * up to budget-wait-ms, then fail; "reject", fail at once; or a fallback that the callout
+   * supports in place of buffering.
+   */
+  protected String getOnBudgetExhausted(MessageContext msgCtxt, String... fallbacks)
+      throws Exception {
+    String policy = getSimpleOptionalProperty("on-budget-exhausted", msgCtxt);
+    if (policy == null) {
+      return "wait";
+    }
+    if (policy.equals("wait") || policy.equals("reject")) {
+      return policy;
+    }
+    for (String fallback : fallbacks) {
+      if (policy.equals(fallback)) {
+        return policy;
+      }
+    }
+    throw error(
+        INVALID_CONFIGURATION, String.format("unsupported on-budget-exhausted: %s", policy));
+  }
+
+  protected long getBudgetWaitMillis(MessageContext msgCtxt) throws Exception {
+    String wait = getSimpleOptionalProperty("budget-wait-ms", msgCtxt);
+    if (wait == null) {
+      return DEFAULT_BUDGET_WAIT_MILLIS;
+    }
+    try {
+      long value = Long.parseLong(wait);
+      if (value < 0) {
+        throw error(INVALID_CONFIGURATION, "budget-wait-ms must not be negative");
+      }
+      return value;
+    } catch (NumberFormatException e) {
+      throw error(INVALID_CONFIGURATION, "budget-wait-ms must be an integer");
+    }
+  }
+
+  /** Grows the reservation to cover the total, or fails, once the wait is over. */
+  protected void reserveOrFail(
+      MemoryBudget.Reservation reservation, long total, long waitMillis) {
+    boolean reserved;
+    try {
+      reserved = reservation.ensure(total, waitMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw error(BUDGET_EXHAUSTED, "interrupted while waiting for the memory budget");
+    }
+    if (!reserved) {
+      throw error(
+          BUDGET_EXHAUSTED,
+          String.format("memory budget exhausted: cannot buffer %d bytes", total));
+    }
+  }
+
+  /**
+   * The variable that holds the memory lease: the property lease-variable, or mpf_memory_lease.
+   * The parser, the creator and ContentReleaser all read the same property.
+   */
+  protected String getLeaseVariable(MessageContext msgCtxt) throws Exception {
+    String variable = getSimpleOptionalProperty("lease-variable", msgCtxt);
+    if (variable == null) {
+      variable = "mpf_memory_lease";
+    }
+    return variable;
+  }
+
+  /**
+   * Keeps the bytes of the reservation held after the callout returns, for content that the flow
+   * keeps. They are added to the lease in the lease variable, which ContentReleaser closes.
+   */
+  protected void keepReserved(MemoryBudget.Reservation reservation, MessageContext msgCtxt)
+      throws Exception {
+    if (reservation.heldBytes() == 0) {
+      return;
+    }
+    String variable = getLeaseVariable(msgCtxt);
+    Object lease = msgCtxt.getVariable(variable);
+    if (lease instanceof MemoryBudget.Lease) {
+      reservation.addTo((MemoryBudget.Lease) lease);
+    } else {
+      msgCtxt.setVariable(variable, reservation.lease());
+    }
+  }
+
+  /** A time by which the callout must stop, checked between chunks of work. */
+  protected static final class Deadline {
+    private final long millis;
+    private final long expiry;
+
+    private Deadline(long millis) {
+      this.millis = millis;
+      this.expiry = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    boolean hasPassed() {
+      return System.nanoTime() - expiry > 0;
+    }
+  }
+
+  /** The deadline set by deadline-ms, counted from now, or null if there is none. */
+  protected Deadline getDeadline(MessageContext msgCtxt) throws Exception {
+    String deadline = getSimpleOptionalProperty("deadline-ms", msgCtxt);
+    if (deadline == null) {
+      return null;
+    }
+    try {
+      long value = Long.parseLong(deadline);
+      if (value <= 0) {
+        throw error(INVALID_CONFIGURATION, "deadline-ms must be a positive integer");
+      }
+      return new Deadline(value);
+    } catch (NumberFormatException e) {
+      throw error(INVALID_CONFIGURATION, "deadline-ms must be a positive integer");
+    }
+  }
+
+  /**
+   * Stops the callout if the deadline has passed, and reports how far it got: the bytes it had
+   * read, and the items it had completed.
+   */
+  protected void checkDeadline(
+      Deadline deadline, long bytesRead, int itemsCompleted, MessageContext msgCtxt) {
+    if (deadline == null || !deadline.hasPassed()) {
+      return;
+    }
+    msgCtxt.setVariable(varName("deadline_exceeded"), "true");
+    msgCtxt.setVariable(varName("bytes_read"), Long.toString(bytesRead));
+    msgCtxt.setVariable(varName("items_completed"), Integer.toString(itemsCompleted));
+    throw error(
+        DEADLINE_EXCEEDED,
+        String.format(
+            "deadline of %d ms exceeded after %d bytes and %d items",
+            deadline.millis,
+            bytesRead,
+            itemsCompleted));
+  }
+
   public static byte[] streamToByteArray(InputStream is) throws IOException {
     ByteArrayOutputStream buffer = new ByteArrayOutputStream();
     int nRead;
@@ -159,7 +372,15 @@ public abstract class CalloutBase {
   }
 
   protected void setExceptionVariables(Exception exc1, MessageContext msgCtxt) {
-    String error = exc1.toString().replaceAll("\n", " ");
+    if (exc1 instanceof FormException) {
+      // the message is known to be a single line, with nothing to strip
+      msgCtxt.setVariable(varName("exception"), exc1.toString());
+      msgCtxt.setVariable(varName("error"), exc1.getMessage());
+      msgCtxt.setVariable(varName("error_code"), ((FormException) exc1).getCode());
+      return;
+    }
+    msgCtxt.setVariable(varName("error_code"), UNEXPECTED_ERROR);
+    String error = exc1.toString().replace('\n', ' ');
     msgCtxt.setVariable(varName("exception"), error);
     Matcher matcher = commonErrorPattern.matcher(error);
     if (matcher.matches()) {
@@ -0,0 +1,78 @@
+// ContentReleaser.java
+//
+// Copyright (c) 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+
+package com.google.apigee.callouts;
+
+import com.apigee.flow.execution.ExecutionContext;
+import com.apigee.flow.execution.ExecutionResult;
+import com.apigee.flow.execution.spi.Execution;
+import com.apigee.flow.message.MessageContext;
+import java.io.Closeable;
+import java.util.Map;
+
+/**
+ * Releases the content store that MultipartFormParserV2 publishes when it holds part bodies
+ * outside the heap, and the memory budget that the parser and MultipartFormCreatorV2 hold for
+ * the content the flow keeps. Attach it where the flow is done with the parsed parts and the
+ * created form.
+ */
+public class ContentReleaser extends CalloutBase implements Execution {
+  private static final String varprefix = "cr_";
+
+  public ContentReleaser(Map properties) {
+    super(properties);
+  }
+
+  public String getVarnamePrefix() {
+    return varprefix;
+  }
+
+  private String getStoreVariable(MessageContext msgCtxt) throws Exception {
+    String variable = getSimpleOptionalProperty("store-variable", msgCtxt);
+    if (variable == null) {
+      variable = "mpf_content_store";
+    }
+    return variable;
+  }
+
+  private static boolean release(String variable, MessageContext msgCtxt) throws Exception {
+    Object value = msgCtxt.getVariable(variable);
+    if (!(value instanceof Closeable)) {
+      return false;
+    }
+    ((Closeable) value).close();
+    msgCtxt.removeVariable(variable);
+    return true;
+  }
+
+  public ExecutionResult execute(
+      final MessageContext msgCtxt, final ExecutionContext execContext) {
+    try {
+      boolean released = release(getStoreVariable(msgCtxt), msgCtxt);
+      released |= release(getLeaseVariable(msgCtxt), msgCtxt);
+      msgCtxt.setVariable(varName("released"), String.valueOf(released));
+      return ExecutionResult.SUCCESS;
+    } catch (Exception e) {
+      if (getDebug()) {
+        String stacktrace = getStackTraceAsString(e);
+        msgCtxt.setVariable(varName("stacktrace"), stacktrace);
+      }
+      setExceptionVariables(e, msgCtxt);
+      return ExecutionResult.SUCCESS;
+    }
+  }
+}
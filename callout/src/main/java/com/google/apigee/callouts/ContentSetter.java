@@ -22,9 +22,19 @@ import com.apigee.flow.execution.ExecutionResult;
 import com.apigee.flow.execution.spi.Execution;
 import com.apigee.flow.message.Message;
 import com.apigee.flow.message.MessageContext;
-import java.io.ByteArrayInputStream;
+import com.google.apigee.json.JavaxJson;
+import com.google.apigee.multipartform.PartContent;
+import com.google.apigee.stream.Base64EncodingInputStream;
+import com.google.apigee.stream.ConcatenatedInputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
 
 public class ContentSetter extends CalloutBase implements Execution {
   private static final String varprefix = "cs_";
@@ -54,11 +64,133 @@ public class ContentSetter extends CalloutBase implements Execution {
     return getSimpleOptionalProperty("contentType", msgCtxt);
   }
 
+  private String getContentSources(MessageContext msgCtxt) throws Exception {
+    return getSimpleOptionalProperty("contentSources", msgCtxt);
+  }
+
+  private String getTransform(MessageContext msgCtxt) throws Exception {
+    String transform = getSimpleOptionalProperty("transform", msgCtxt);
+    return (transform == null) ? null : transform.toLowerCase();
+  }
+
+  /**
+   * Wraps the content in the codec named by the transform property, so that it is applied as the
+   * content is read, without an intermediate copy.
+   */
+  private InputStream transform(InputStream content, String transform) {
+    switch (transform) {
+      case "base64-decode":
+        return Base64.getDecoder().wrap(content);
+      case "base64url-decode":
+        return Base64.getUrlDecoder().wrap(content);
+      case "base64-encode":
+        return new Base64EncodingInputStream(content, Base64.getEncoder());
+      case "base64url-encode":
+        return new Base64EncodingInputStream(content, Base64.getUrlEncoder());
+      default:
+        throw error(INVALID_CONFIGURATION, String.format("unsupported transform: %s", transform));
+    }
+  }
+
+  private static long transformedLength(long length, String transform) {
+    return transform.endsWith("-encode") ? Base64EncodingInputStream.encodedLength(length) : -1;
+  }
+
+  private PartContent variableContent(String contentVar, MessageContext msgCtxt) {
+    if (contentVar.startsWith(PART_REFERENCE_PREFIX)) {
+      return resolvePartReference(contentVar, msgCtxt);
+    }
+    Object content = msgCtxt.getVariable(contentVar);
+    if (content instanceof PartContent) {
+      return (PartContent) content;
+    }
+    if (content instanceof byte[]) {
+      return PartContent.of((byte[]) content);
+    }
+    if (content instanceof String) {
+      return PartContent.of(((String) content).getBytes(StandardCharsets.UTF_8));
+    }
+    if (content == null) {
+      throw error(MISSING_CONTENT, String.format("variable %s is not set", contentVar));
+    }
+    throw error(
+        UNSUPPORTED_CONTENT,
+        String.format("variable %s is neither a string nor a byte array", contentVar));
+  }
+
+  // The stream is obtained now, so that it refers to the original content even if the message is
+  // also the destination; it is read only when the destination content is read, once. An error
+  // reading it surfaces then, after this callout has returned, so it does not set cs_error.
+  private PartContent messageContent(String messageName, MessageContext msgCtxt) {
+    Object value = msgCtxt.getVariable(messageName);
+    if (!(value instanceof Message)) {
+      throw error(MISSING_MESSAGE, String.format("%s is not a message", messageName));
+    }
+    Message source = (Message) value;
+    InputStream in = source.getContentAsStream();
+    if (in == null) {
+      throw error(MISSING_CONTENT, String.format("message %s has no content", messageName));
+    }
+    long length = -1;
+    String contentLength = source.getHeader("content-length");
+    if (contentLength != null) {
+      try {
+        length = Long.parseLong(contentLength.trim());
+      } catch (NumberFormatException e) {
+        // unknown
+      }
+    }
+    return PartContent.once(in, length);
+  }
+
+  /**
+   * Reads the contentSources property, a JSON array in which each element names one source: <code>
+   * [ {"var": "name"}, {"message": "name"}, {"text": "literal"} ]</code>.
+   */
+  private List<PartContent> parseSources(String json, MessageContext msgCtxt) {
+    List<PartContent> sources = new ArrayList<PartContent>();
+    try (JsonParser parser = JavaxJson.createParser(json)) {
+      if (!parser.hasNext() || parser.next() != Event.START_ARRAY) {
+        throw error(INVALID_CONFIGURATION, "contentSources is not a JSON array");
+      }
+      for (Event event = parser.next(); event != Event.END_ARRAY; event = parser.next()) {
+        if (event != Event.START_OBJECT) {
+          throw error(
+              INVALID_CONFIGURATION, "each element of contentSources must be a JSON object");
+        }
+        for (event = parser.next(); event != Event.END_OBJECT; event = parser.next()) {
+          String kind = parser.getString();
+          if (parser.next() != Event.VALUE_STRING) {
+            throw error(
+                INVALID_CONFIGURATION,
+                String.format("the value of %s in contentSources must be a string", kind));
+          }
+          String value = parser.getString();
+          if (kind.equals("var")) {
+            sources.add(variableContent(value, msgCtxt));
+          } else if (kind.equals("message")) {
+            sources.add(messageContent(value, msgCtxt));
+          } else if (kind.equals("text")) {
+            sources.add(PartContent.of(value.getBytes(StandardCharsets.UTF_8)));
+          } else {
+            throw error(
+                INVALID_CONFIGURATION, String.format("unknown kind of content source: %s", kind));
+          }
+        }
+      }
+    }
+    return sources;
+  }
+
   public ExecutionResult execute(
       final MessageContext msgCtxt, final ExecutionContext execContext) {
     try {
       boolean mustSetDestination = false;
-      String contentVar = getContentVar(msgCtxt);
+      String contentSources = getContentSources(msgCtxt);
+      List<PartContent> sources =
+          (contentSources != null)
+              ? parseSources(contentSources, msgCtxt)
+              : Collections.singletonList(variableContent(getContentVar(msgCtxt), msgCtxt));
       String destination = getDestination(msgCtxt);
       Message message = (Message) msgCtxt.getVariable(destination);
       if (message == null) {
@@ -67,22 +199,46 @@ public class ContentSetter extends CalloutBase implements Execution {
             msgCtxt.createMessage(
                 msgCtxt.getClientConnection().getMessageFactory().createRequest(msgCtxt));
       }
-      Object content = msgCtxt.getVariable(contentVar);
-      byte[] contentBytes =
-          (content instanceof byte[])
-              ? (byte[]) content
-              : ((String) content).getBytes(StandardCharsets.UTF_8);
-      msgCtxt.setVariable(varName("payload_length"), contentBytes.length);
+      long contentLength = 0;
+      List<ConcatenatedInputStream.Source> streams =
+          new ArrayList<ConcatenatedInputStream.Source>();
+      for (PartContent source : sources) {
+        streams.add(source.asSource());
+        long length = source.length();
+        contentLength = (contentLength < 0 || length < 0) ? -1 : contentLength + length;
+      }
+      InputStream content = new ConcatenatedInputStream(streams);
+      String transform = getTransform(msgCtxt);
+      if (transform != null) {
+        content = transform(content, transform);
+        contentLength = transformedLength(contentLength, transform);
+      }
+      if (contentLength >= 0) {
+        message.setHeader("content-length", Long.toString(contentLength));
+      } else {
+        // the destination may still carry the length of its previous content
+        message.removeHeader("content-length");
+      }
+      // an Integer, as before contentSources; not set when the length is not known up front
+      if (contentLength >= 0 && contentLength <= Integer.MAX_VALUE) {
+        msgCtxt.setVariable(varName("payload_length"), (int) contentLength);
+      } else {
+        msgCtxt.removeVariable(varName("payload_length"));
+      }
       String contentType = getContentType(msgCtxt);
       if (contentType != null) {
         message.setHeader("content-type", contentType);
       }
-      message.setContent(new ByteArrayInputStream(contentBytes));
+      message.setContent(content);
       if (mustSetDestination) {
         msgCtxt.setVariable(destination, message);
       }
       return ExecutionResult.SUCCESS;
     } catch (IllegalStateException exc1) {
+      if (getDebug()) {
+        String stacktrace = getStackTraceAsString(exc1);
+        msgCtxt.setVariable(varName("stacktrace"), stacktrace);
+      }
       setExceptionVariables(exc1, msgCtxt);
       return ExecutionResult.SUCCESS;
     } catch (Exception e) {
@@ -20,22 +20,43 @@ import com.apigee.flow.execution.ExecutionResult;
 import com.apigee.flow.execution.spi.Execution;
 import com.apigee.flow.message.Message;
 import com.apigee.flow.message.MessageContext;
-import com.google.apigee.json.JavaxJson;
+import com.google.apigee.multipartform.FormDescriptor;
+import com.google.apigee.multipartform.FormException;
+import com.google.apigee.multipartform.MemoryBudget;
 import com.google.apigee.multipartform.MultipartForm;
 import com.google.apigee.multipartform.Part;
-import java.io.ByteArrayInputStream;
+import com.google.apigee.multipartform.PartCache;
+import com.google.apigee.multipartform.PartContent;
+import com.google.apigee.multipartform.PartSpec;
+import com.google.apigee.stream.CompressingInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.Deflater;
 
 public class MultipartFormCreatorV2 extends CalloutBase implements Execution {
   private static final String varprefix = "mpf_";
   private static final boolean wantStringDefault = true;
+  private static final String[] CACHE_SCOPE_VARIABLES = {
+    "organization.name", "environment.name", "apiproxy.name", "apiproxy.revision"
+  };
+  private final Part staticSinglePart;
 
   public MultipartFormCreatorV2(Map properties) {
     super(properties);
+    this.staticSinglePart = buildStaticSinglePart();
+    warmUpIfRequested();
   }
 
   public String getVarnamePrefix() {
@@ -74,37 +95,380 @@ public class MultipartFormCreatorV2 extends CalloutBase implements Execution {
     return getSimpleOptionalProperty("fileName", msgCtxt);
   }
 
+  private String getCompression(MessageContext msgCtxt) throws Exception {
+    return getSimpleOptionalProperty("compress", msgCtxt);
+  }
+
+  private int getCompressionLevel(MessageContext msgCtxt) throws Exception {
+    String level = getSimpleOptionalProperty("compression-level", msgCtxt);
+    if (level == null) {
+      return Deflater.DEFAULT_COMPRESSION;
+    }
+    try {
+      return Integer.parseInt(level);
+    } catch (NumberFormatException e) {
+      throw error(INVALID_CONFIGURATION, "compression-level must be an integer, 0-9");
+    }
+  }
+
   private String getPartName(MessageContext msgCtxt) throws Exception {
     return getSimpleRequiredProperty("part-name", msgCtxt);
   }
 
+  // True when the form is configured with the plain single-part properties, not a descriptor.
+  private boolean isSinglePart() {
+    return !properties.containsKey("descriptor") && properties.containsKey("contentVar");
+  }
+
+  private String literalProperty(String propName) {
+    String value = properties.get(propName);
+    if (value == null) {
+      return null;
+    }
+    value = value.trim();
+    return (value.isEmpty() || value.indexOf('{') >= 0) ? null : value;
+  }
+
+  // When the single part has a fixed name, content type and file name, it has the same headers
+  // on every call; build the Part and encode its header block once, here.
+  private Part buildStaticSinglePart() {
+    if (!isSinglePart()) {
+      return null;
+    }
+    String partName = literalProperty("part-name");
+    String contentType = literalProperty("contentType");
+    if (partName == null || contentType == null) {
+      return null;
+    }
+    String fileName = null;
+    String rawFileName = properties.get("fileName");
+    if (rawFileName != null && !rawFileName.trim().isEmpty()) {
+      fileName = literalProperty("fileName");
+      if (fileName == null) {
+        return null; // refers to a variable; resolve it on each call
+      }
+    }
+    Part template = new Part(partName).withContentType(contentType).withFileName(fileName);
+    return template.withEncodedHeaders(MultipartForm.encodeHeaders(template));
+  }
+
+  // The content of a variable: a string, a byte array, or a PartContent published by the parser.
+  // A contentVar of the form "part:NAME" refers to a part in the parser's form index.
+  private PartContent getVariableContent(
+      String partName, String contentVar, boolean wantDecode, MessageContext msgCtxt) {
+    Object partContent =
+        contentVar.startsWith(PART_REFERENCE_PREFIX)
+            ? resolvePartReference(contentVar, msgCtxt)
+            : msgCtxt.getVariable(contentVar);
+    if (partContent instanceof PartContent) {
+      PartContent stored = (PartContent) partContent;
+      if (!wantDecode) {
+        return stored;
+      }
+      return PartContent.lazy(
+          () -> {
+            try {
+              return Base64.getDecoder().wrap(stored.openStream());
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          },
+          -1);
+    }
+    if (partContent == null) {
+      throw error(MISSING_CONTENT, String.format("part %s has missing content", partName));
+    } else if (partContent instanceof String) {
+      partContent = ((String) partContent).getBytes(StandardCharsets.UTF_8);
+      if (wantDecode) {
+        partContent = Base64.getDecoder().decode((byte[]) partContent);
+      }
+    } else if (!(partContent instanceof byte[])) {
+      throw error(UNSUPPORTED_CONTENT, String.format("part %s not of supported type", partName));
+    }
+    return PartContent.of((byte[]) partContent);
+  }
+
+  // The body of the named message, spliced into the form as it is streamed out. The stream is
+  // obtained now, so that the part still refers to the original content if the message is also
+  // the destination of the form; it is read only later, once. An error reading it surfaces when
+  // the form is sent, after this callout has returned, so it does not set mpf_error.
+  private PartContent getMessageContent(String partName, PartSpec spec, MessageContext msgCtxt) {
+    Object value = msgCtxt.getVariable(spec.getContentMessage());
+    if (!(value instanceof Message)) {
+      throw error(
+          MISSING_MESSAGE,
+          String.format("part %s: %s is not a message", partName, spec.getContentMessage()));
+    }
+    Message contentMessage = (Message) value;
+    InputStream in = contentMessage.getContentAsStream();
+    if (in == null) {
+      throw error(MISSING_CONTENT, String.format("part %s has missing content", partName));
+    }
+    if (spec.getWantBase64Decode()) {
+      return PartContent.once(Base64.getDecoder().wrap(in), -1);
+    }
+    return PartContent.once(in, contentLengthOf(contentMessage));
+  }
+
+  private static long contentLengthOf(Message message) {
+    String length = message.getHeader("content-length");
+    if (length == null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(length.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private Part getSinglePart(MessageContext msgCtxt) throws Exception {
+    String contentVar = getPartContentVar(msgCtxt);
+    boolean wantDecode = getWantDecode(msgCtxt);
+    if (staticSinglePart != null) {
+      Part part =
+          new Part(staticSinglePart.getName())
+              .withFileName(staticSinglePart.getFileName())
+              .withEncodedHeaders(staticSinglePart.getEncodedHeaders());
+      part.setContentType(staticSinglePart.getContentType());
+      return part.withContent(getVariableContent(part.getName(), contentVar, wantDecode, msgCtxt));
+    }
+    String partName = getPartName(msgCtxt);
+    Part part =
+        new Part(partName)
+            .withContentType(getPartContentType(msgCtxt))
+            .withContent(getVariableContent(partName, contentVar, wantDecode, msgCtxt));
+    String fileName = getPartFileName(msgCtxt);
+    if (fileName != null) {
+      part.setFileName(fileName);
+    }
+    return part;
+  }
+
+  // A resource named "file:path" is read from the local disk, below resource-base-dir; any other
+  // name, optionally prefixed with "classpath:", is read from the classpath, which includes the
+  // callout jar. A file is reserved in the memory budget before it is read, by its size on disk; a
+  // classpath resource, once it has been read.
+  private byte[] loadResource(
+      String partName, String resource, boolean wantDecode, Budget budget, MessageContext msgCtxt)
+      throws Exception {
+    InputStream in;
+    if (resource.startsWith("file:")) {
+      Path path = resolveFile(partName, resource, msgCtxt);
+      budget.add(Files.size(path));
+      in = Files.newInputStream(path);
+    } else {
+      String path = resource.startsWith("classpath:") ? resource.substring(10) : resource;
+      if (!path.startsWith("/")) {
+        path = "/" + path;
+      }
+      in = MultipartFormCreatorV2.class.getResourceAsStream(path);
+      if (in == null) {
+        throw error(
+            MISSING_CONTENT, String.format("part %s: resource %s not found", partName, resource));
+      }
+    }
+    try (InputStream is = wantDecode ? Base64.getDecoder().wrap(in) : in) {
+      byte[] content = streamToByteArray(is);
+      if (!resource.startsWith("file:")) {
+        budget.add(content.length);
+      }
+      return content;
+    }
+  }
+
+  private String getResourceBaseDir(MessageContext msgCtxt) throws Exception {
+    return getSimpleOptionalProperty("resource-base-dir", msgCtxt);
+  }
+
+  // The file must lie below resource-base-dir once the path is normalized and its links are
+  // followed; without a base directory, no file may be read.
+  private Path resolveFile(String partName, String resource, MessageContext msgCtxt)
+      throws Exception {
+    String baseDir = getResourceBaseDir(msgCtxt);
+    if (baseDir == null) {
+      throw error(
+          INVALID_CONFIGURATION,
+          String.format("part %s: a file: resource requires resource-base-dir", partName));
+    }
+    Path base;
+    Path path;
+    try {
+      base = Paths.get(baseDir).toRealPath();
+      path = base.resolve(resource.substring(5)).normalize();
+      if (path.startsWith(base)) {
+        path = path.toRealPath();
+      }
+    } catch (InvalidPathException | NoSuchFileException e) {
+      throw error(
+          MISSING_CONTENT, String.format("part %s: resource %s not found", partName, resource));
+    }
+    if (!path.startsWith(base)) {
+      throw error(
+          FormException.INVALID_DESCRIPTOR,
+          String.format("part %s: resource %s is outside resource-base-dir", partName, resource));
+    }
+    return path;
+  }
+
+  /** The bytes this invocation has read into memory, reserved in the shared memory budget. */
+  private final class Budget {
+    final MemoryBudget.Reservation reservation = MemoryBudget.shared().open();
+    final long waitMillis;
+    long total;
+
+    Budget(long waitMillis) {
+      this.waitMillis = waitMillis;
+    }
+
+    void add(long bytes) {
+      total += bytes;
+      reserveOrFail(reservation, total, waitMillis);
+    }
+  }
+
+  // The key identifies everything that goes into the encoded part, and the proxy revision that
+  // asked for it: the cache is shared by the JVM, and a variable or resource of the same name in
+  // another proxy, or another organization, holds other content.
+  private String cacheKey(PartSpec spec, MessageContext msgCtxt) throws Exception {
+    StringBuilder scope = new StringBuilder();
+    for (String variable : CACHE_SCOPE_VARIABLES) {
+      Object value = msgCtxt.getVariable(variable);
+      scope.append(value).append('\0');
+    }
+    return scope
+        + String.join(
+            "\0",
+            spec.getName(),
+            String.valueOf(spec.getContentType()),
+            String.valueOf(spec.getFileName()),
+            String.valueOf(spec.getTransferEncoding()),
+            (spec.getContentResource() != null)
+                ? "resource:" + spec.getContentResource() + "\0" + getResourceBaseDir(msgCtxt)
+                : "var:" + spec.getContentVar(),
+            String.valueOf(spec.getWantBase64Decode()));
+  }
+
+  /**
+   * Sets the headers and content of the part from the shared cache, encoding and adding them on a
+   * miss. Every form that includes the part shares the cached arrays; nothing is copied. For a
+   * variable, "cacheable" asserts that its content is the same on every call, so the variable is
+   * read only on a miss.
+   */
+  private Part withCachedContent(Part part, PartSpec spec, Budget budget, MessageContext msgCtxt)
+      throws Exception {
+    String key = cacheKey(spec, msgCtxt);
+    PartCache cache = PartCache.shared();
+    PartCache.Entry entry = cache.get(key);
+    if (entry == null) {
+      byte[] body;
+      if (spec.getContentResource() != null) {
+        body =
+            loadResource(
+                part.getName(),
+                spec.getContentResource(),
+                spec.getWantBase64Decode(),
+                budget,
+                msgCtxt);
+      } else if (spec.getContentVar() != null) {
+        body =
+            getVariableContent(
+                    part.getName(), spec.getContentVar(), spec.getWantBase64Decode(), msgCtxt)
+                .toByteArray();
+      } else {
+        throw error(
+            FormException.INVALID_DESCRIPTOR,
+            String.format(
+                "part %s has none of content-var, content-message, content-resource",
+                part.getName()));
+      }
+      entry = new PartCache.Entry(MultipartForm.encodeHeaders(part), body);
+      cache.put(key, entry);
+    }
+    return part.withEncodedHeaders(entry.getHeaders()).withContent(PartContent.of(entry.getBody()));
+  }
+
+  private List<Part> getDescriptorParts(Budget budget, Deadline deadline, MessageContext msgCtxt)
+      throws Exception {
+    String descriptor = getDescriptor(msgCtxt);
+
+    List<PartSpec> specs = FormDescriptor.parse(descriptor);
+    // eg
+    // {
+    //   "part1.txt" : {
+    //     "content-var" :  "variable-name-here",
+    //     "content-type" : "content-type-here",
+    //     "want-b64-decode": false
+    //   },
+    //   "part2.png" : {
+    //     "content-var" :  "variable-name-here",
+    //     "content-type" : "content-type-here",
+    //     "want-b64-decode": false
+    //   }
+    // }
+
+    List<Part> parts = new ArrayList<Part>();
+    for (PartSpec spec : specs) {
+      String partName = spec.getName();
+      Part part = new Part(partName).withContentType(spec.getContentType());
+      if (spec.getFileName() != null && !spec.getFileName().equals("")) {
+        part.setFileName(spec.getFileName());
+      }
+      if (spec.getTransferEncoding() != null) {
+        part.setTransferEncoding(spec.getTransferEncoding());
+      }
+
+      if (spec.isCacheable() && spec.getContentMessage() == null) {
+        parts.add(withCachedContent(part, spec, budget, msgCtxt));
+        checkDeadline(deadline, budget.total, parts.size(), msgCtxt);
+        continue;
+      }
+
+      PartContent partContent;
+      if (spec.getContentMessage() != null) {
+        partContent = getMessageContent(partName, spec, msgCtxt);
+      } else if (spec.getContentResource() != null) {
+        partContent =
+            PartContent.of(
+                loadResource(
+                    partName,
+                    spec.getContentResource(),
+                    spec.getWantBase64Decode(),
+                    budget,
+                    msgCtxt));
+      } else if (spec.getContentVar() != null) {
+        partContent =
+            getVariableContent(
+                partName, spec.getContentVar(), spec.getWantBase64Decode(), msgCtxt);
+      } else {
+        throw error(
+            FormException.INVALID_DESCRIPTOR,
+            String.format(
+                "part %s has none of content-var, content-message, content-resource", partName));
+      }
+      parts.add(part.withContent(partContent));
+      checkDeadline(deadline, budget.total, parts.size(), msgCtxt);
+    }
+    return parts;
+  }
+
   public ExecutionResult execute(final MessageContext msgCtxt, final ExecutionContext execContext) {
+    Budget budget = null;
     try {
-      String descriptor = getDescriptor(msgCtxt);
-
-      @SuppressWarnings("unchecked")
-      Map<String, Object> descriptorMap = JavaxJson.fromJson(descriptor, Map.class);
-      // Map<String, Object> map = gson.fromJson(new StringReader(), Map.class);
-      // eg
-      // {
-      //   "part1.txt" : {
-      //     "content-var" :  "variable-name-here",
-      //     "content-type" : "content-type-here",
-      //     "want-b64-decode": false
-      //   },
-      //   "part2.png" : {
-      //     "content-var" :  "variable-name-here",
-      //     "content-type" : "content-type-here",
-      //     "want-b64-decode": false
-      //   }
-      // }
+      Deadline deadline = getDeadline(msgCtxt);
+      String onBudgetExhausted = getOnBudgetExhausted(msgCtxt);
+      budget = new Budget(onBudgetExhausted.equals("wait") ? getBudgetWaitMillis(msgCtxt) : 0);
+      List<Part> parts =
+          isSinglePart()
+              ? Collections.singletonList(getSinglePart(msgCtxt))
+              : getDescriptorParts(budget, deadline, msgCtxt);
 
       String boundary = "--------------------" + randomAlphanumeric(14);
       msgCtxt.setVariable(varName("boundary"), boundary);
       String destination = getDestination(msgCtxt);
       Message message = (Message) msgCtxt.getVariable(destination);
       if (message == null) {
-        throw new IllegalStateException(String.format("message <%s> does not exist", destination));
+        throw error(MISSING_MESSAGE, String.format("message <%s> does not exist", destination));
         // mustSetDestination = true;
         // message =
         //     msgCtxt.createMessage(
@@ -113,52 +477,35 @@ public class MultipartFormCreatorV2 extends CalloutBase implements Execution {
       message.setHeader("content-type", "multipart/form-data; boundary=" + boundary);
       msgCtxt.setVariable(varName("ctype"), "multipart/form-data; boundary=" + boundary);
 
-      List<Part> parts = new ArrayList<Part>();
-      for (Map.Entry<String, Object> entry : descriptorMap.entrySet()) {
-        String partName = entry.getKey();
-        @SuppressWarnings("unchecked")
-        Map<String, Object> partDefinition = (Map<String, Object>) entry.getValue();
-
-        Object partContent = msgCtxt.getVariable((String) partDefinition.get("content-var"));
-        if (partContent == null) {
-          throw new IllegalStateException(String.format("part %s has missing content", partName));
-        } else if (partContent instanceof String) {
-          partContent = ((String) partContent).getBytes(StandardCharsets.UTF_8);
-          if ((Boolean) partDefinition.get("want-b64-decode")) {
-            partContent = Base64.getDecoder().decode((byte[]) partContent);
-          }
-        } else if (!(partContent instanceof byte[])) {
-          throw new IllegalStateException(String.format("part %s not of supported type", partName));
-        }
-
-        Part part =
-            new Part(partName)
-                .withPartContent((byte[]) partContent)
-                .withContentType((String) partDefinition.get("content-type"));
-
-        if (partDefinition.get("file-name") != null
-            && !partDefinition.get("file-name").equals("")) {
-          part.setFileName((String) partDefinition.get("file-name"));
-        }
-
-        if (partDefinition.get("transfer-encoding") != null) {
-          part.setTransferEncoding((String) partDefinition.get("transfer-encoding"));
-        }
-
-        parts.add(part);
-      }
-
       MultipartForm mpf = new MultipartForm(boundary, parts);
-      byte[] payload = streamToByteArray(mpf.openStream());
-      msgCtxt.setVariable(varName("payload_length"), payload.length);
-      message.setContent(new ByteArrayInputStream(payload));
+      String compression = getCompression(msgCtxt);
+      // the length of what is sent; a compressed length is not known until the form is streamed
+      long payloadLength = (compression == null) ? mpf.getContentLength() : -1;
+      if (payloadLength >= 0) {
+        msgCtxt.setVariable(varName("payload_length"), payloadLength);
+      } else {
+        msgCtxt.removeVariable(varName("payload_length"));
+      }
+      InputStream payload = mpf.openStream();
+      if (compression != null) {
+        payload =
+            CompressingInputStream.forEncoding(payload, compression, getCompressionLevel(msgCtxt));
+        message.setHeader("content-encoding", compression.trim().toLowerCase());
+      }
+      message.setContent(payload);
       // if (mustSetDestination) {
       //   msgCtxt.setVariable(destination, message);
       // }
 
       msgCtxt.setVariable(destination + ".header.modified", "true");
+      // the form streams from the content read into memory; keep it reserved until released
+      keepReserved(budget.reservation, msgCtxt);
       return ExecutionResult.SUCCESS;
     } catch (IllegalStateException exc1) {
+      if (getDebug()) {
+        String stacktrace = getStackTraceAsString(exc1);
+        msgCtxt.setVariable(varName("stacktrace"), stacktrace);
+      }
       setExceptionVariables(exc1, msgCtxt);
       return ExecutionResult.SUCCESS;
     } catch (Exception e) {
@@ -168,6 +515,10 @@ public class MultipartFormCreatorV2 extends CalloutBase implements Execution {
       }
       setExceptionVariables(e, msgCtxt);
       return ExecutionResult.SUCCESS;
+    } finally {
+      if (budget != null) {
+        budget.reservation.close();
+      }
     }
   }
 }
@@ -22,22 +22,85 @@ import com.apigee.flow.execution.ExecutionResult;
 import com.apigee.flow.execution.spi.Execution;
 import com.apigee.flow.message.Message;
 import com.apigee.flow.message.MessageContext;
+import com.google.apigee.multipartform.ContentStore;
+import com.google.apigee.multipartform.DirectContentStore;
+import com.google.apigee.multipartform.FieldListener;
+import com.google.apigee.multipartform.FormException;
+import com.google.apigee.multipartform.FormIndex;
+import com.google.apigee.multipartform.MemoryBudget;
+import com.google.apigee.multipartform.MultipartParser;
 import com.google.apigee.multipartform.Part;
-import com.google.apigee.stream.StreamSearcher;
-import java.io.BufferedInputStream;
+import com.google.apigee.multipartform.PartContent;
+import com.google.apigee.multipartform.PartListener;
+import com.google.apigee.multipartform.PartVisitor;
+import com.google.apigee.multipartform.PartVisitors;
+import com.google.apigee.multipartform.UrlEncodedParser;
+import com.google.apigee.stream.DecompressingInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
 
 public class MultipartFormParserV2 extends CalloutBase implements Execution {
   private static final String varprefix = "mpf_";
   private static final boolean wantStringDefault = true;
-  private static int BUFFER_SIZE = 2048;
+  private static int BUFFER_SIZE = 8192;
+  private static final int DEFAULT_MAX_DECOMPRESSION_RATIO = 100;
+  private static final int RETAINED_BUFFER_SIZE = 256 * 1024;
+  private static final long MAX_PRESIZE = 16L * 1024 * 1024;
+
+  private static final FormException SOURCE_IS_NULL =
+      new FormException(MISSING_MESSAGE, "source message is null.", false);
+
+  private static final Pattern unsafeFileNameChars = Pattern.compile("[^a-zA-Z0-9_\\. ]");
+
+  // The read buffer, and the buffer in which part bodies accumulate, are kept per thread and keep
+  // their capacity from one part, and one message, to the next; the only per-part allocation is
+  // then the array that gets published. A body buffer that grew beyond RETAINED_BUFFER_SIZE is
+  // dropped after use, to bound the memory held by idle threads.
+  private static final ThreadLocal<Scratch> scratchBuffers = ThreadLocal.withInitial(Scratch::new);
+
+  private static class Scratch {
+    final byte[] read = new byte[BUFFER_SIZE];
+    final PartBuffer body = new PartBuffer();
+  }
+
+  private static class PartBuffer extends ByteArrayOutputStream {
+    PartBuffer() {
+      super(BUFFER_SIZE);
+    }
+
+    PartBuffer(int size) {
+      super(size);
+    }
+
+    /** The internal array; the first size() bytes are valid. */
+    byte[] array() {
+      return buf;
+    }
+
+    void write(ByteBuffer chunk) {
+      write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+    }
+
+    ByteBuffer contents() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+
+    int capacity() {
+      return buf.length;
+    }
+  }
 
   public MultipartFormParserV2(Map properties) {
     super(properties);
+    warmUpIfRequested();
   }
 
   public String getVarnamePrefix() {
@@ -52,83 +115,540 @@ public class MultipartFormParserV2 extends CalloutBase implements Execution {
     return source;
   }
 
+  private int getMaxDecompressionRatio(MessageContext msgCtxt) throws Exception {
+    String ratio = getSimpleOptionalProperty("max-decompression-ratio", msgCtxt);
+    if (ratio == null) {
+      return DEFAULT_MAX_DECOMPRESSION_RATIO;
+    }
+    try {
+      int value = Integer.parseInt(ratio);
+      if (value < 1) {
+        throw error(INVALID_CONFIGURATION, "max-decompression-ratio must be a positive integer");
+      }
+      return value;
+    } catch (NumberFormatException e) {
+      throw error(INVALID_CONFIGURATION, "max-decompression-ratio must be a positive integer");
+    }
+  }
+
+  private String getPartVisitors(MessageContext msgCtxt) throws Exception {
+    return getSimpleOptionalProperty("part-visitors", msgCtxt);
+  }
+
+  private String getMode(MessageContext msgCtxt) throws Exception {
+    String mode = getSimpleOptionalProperty("mode", msgCtxt);
+    if (mode == null) {
+      return "full";
+    }
+    if (mode.equals("full") || mode.equals("metadata") || mode.equals("index")) {
+      return mode;
+    }
+    throw error(INVALID_CONFIGURATION, String.format("unsupported mode: %s", mode));
+  }
+
+  private ContentStore getContentStore(MessageContext msgCtxt) throws Exception {
+    String store = getSimpleOptionalProperty("content-store", msgCtxt);
+    if (store == null || store.equals("heap")) {
+      return null;
+    }
+    if (store.equals("direct")) {
+      return new DirectContentStore();
+    }
+    try {
+      return (ContentStore) Class.forName(store).getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | ClassCastException e) {
+      throw error(INVALID_CONFIGURATION, String.format("unsupported content-store: %s", store));
+    }
+  }
+
+  private int getContentStoreThreshold(MessageContext msgCtxt) throws Exception {
+    String threshold = getSimpleOptionalProperty("content-store-threshold", msgCtxt);
+    if (threshold == null) {
+      return RETAINED_BUFFER_SIZE;
+    }
+    try {
+      int value = Integer.parseInt(threshold);
+      if (value < 0) {
+        throw error(INVALID_CONFIGURATION, "content-store-threshold must not be negative");
+      }
+      return value;
+    } catch (NumberFormatException e) {
+      throw error(INVALID_CONFIGURATION, "content-store-threshold must be an integer");
+    }
+  }
+
+  // -1, the default, means never
+  private int getParallelThreshold(MessageContext msgCtxt) throws Exception {
+    String threshold = getSimpleOptionalProperty("parallel-threshold", msgCtxt);
+    if (threshold == null) {
+      return -1;
+    }
+    try {
+      int value = Integer.parseInt(threshold);
+      if (value < 0) {
+        throw error(INVALID_CONFIGURATION, "parallel-threshold must not be negative");
+      }
+      return value;
+    } catch (NumberFormatException e) {
+      throw error(INVALID_CONFIGURATION, "parallel-threshold must be an integer");
+    }
+  }
+
+  /**
+   * Collects the events from the MultipartParser into Parts, and sets the context variables for
+   * each part as it ends. The configured visitors see every body chunk in the same pass. When a
+   * content store is configured, a body that grows beyond the threshold moves to the store, and
+   * the PartContent from the store is published in place of a byte array. In metadata mode, bodies
+   * are only counted, never retained, and no content variables are set. Retained bytes are counted
+   * against the reservation in the shared memory budget.
+   */
+  private class FormListener implements PartListener {
+    private final MessageContext msgCtxt;
+    // an array, so that the for-each in onBodyChunk allocates no iterator for each chunk
+    private final PartVisitor[] visitors;
+    final List<String> names = new ArrayList<String>();
+    private final PartBuffer body;
+    private final ContentStore store;
+    private final int threshold;
+    private final boolean metadataOnly;
+    private final MemoryBudget.Reservation reservation;
+    private final long budgetWaitMillis;
+    private ContentStore.Sink sink;
+    private long bodyLength;
+    private long retained;
+    private String partName;
+    private String ctype;
+
+    FormListener(
+        MessageContext msgCtxt,
+        List<PartVisitor> visitors,
+        ContentStore store,
+        int threshold,
+        boolean metadataOnly,
+        MemoryBudget.Reservation reservation,
+        long budgetWaitMillis) {
+      this.msgCtxt = msgCtxt;
+      this.visitors = visitors.toArray(new PartVisitor[0]);
+      this.body = scratchBuffers.get().body;
+      this.store = store;
+      this.threshold = threshold;
+      this.metadataOnly = metadataOnly;
+      this.reservation = reservation;
+      this.budgetWaitMillis = budgetWaitMillis;
+    }
+
+    public void onPartStart() {
+      partName = null;
+      ctype = null;
+      body.reset();
+      sink = null;
+      bodyLength = 0;
+      for (PartVisitor visitor : visitors) {
+        visitor.startPart();
+      }
+    }
+
+    public void onHeader(String name, String value) {
+      String headerName = name.toLowerCase();
+      if (headerName.equals("content-disposition")) {
+        partName = Part.nameFromContentDisposition(value);
+      } else if (headerName.equals("content-type")) {
+        ctype = value;
+      }
+    }
+
+    public void onBodyChunk(ByteBuffer chunk) {
+      for (PartVisitor visitor : visitors) {
+        visitor.visit(chunk);
+      }
+      if (metadataOnly) {
+        bodyLength += chunk.remaining();
+        return;
+      }
+      retained += chunk.remaining();
+      if (retained > reservation.heldBytes()) {
+        reserveOrFail(reservation, retained, budgetWaitMillis);
+      }
+      if (sink != null) {
+        sink.write(chunk);
+        return;
+      }
+      body.write(chunk);
+      if (store != null && body.size() > threshold) {
+        sink = store.newSink();
+        sink.write(body.contents());
+        body.reset();
+      }
+    }
+
+    public void onPartEnd() {
+      if (partName == null) {
+        throw error(FormException.MISSING_PART_NAME, "part.getName() is null");
+      }
+      if (metadataOnly) {
+        int numFound = names.size() + 1;
+        String fileName = unsafeFileNameChars.matcher(partName).replaceAll("");
+        names.add(fileName);
+        msgCtxt.setVariable(varName("item_filename_" + numFound), fileName);
+        msgCtxt.setVariable(varName("item_content-type_" + numFound), ctype);
+        msgCtxt.setVariable(varName("item_size_" + numFound), Long.toString(bodyLength));
+        publishVisitors(numFound);
+        return;
+      }
+      // stored content is published as is, so that it stays off the heap
+      boolean stored = (sink != null);
+      Part part =
+          new Part(partName)
+              .withContentType(ctype)
+              .withContent(stored ? sink.finish() : PartContent.of(body.toByteArray()));
+      sink = null;
+      int numFound = names.size() + 1;
+      String fileName = unsafeFileNameChars.matcher(part.getName()).replaceAll("");
+      names.add(fileName);
+      msgCtxt.setVariable(varName("item_filename_" + numFound), fileName);
+      msgCtxt.setVariable(
+          varName("item_content_" + numFound),
+          stored ? part.getContent() : part.getPartContent());
+      if (!stored && "text/plain".equals(part.getContentType())) {
+        msgCtxt.setVariable(
+            varName("item_content_" + numFound + "_string"), new String(part.getPartContent()));
+      }
+      msgCtxt.setVariable(varName("item_content-type_" + numFound), part.getContentType());
+      msgCtxt.setVariable(varName("item_size_" + numFound), part.getSize() + "");
+      publishVisitors(numFound);
+    }
+
+    private void publishVisitors(int numFound) {
+      for (PartVisitor visitor : visitors) {
+        msgCtxt.setVariable(
+            varName("item_" + visitor.getName() + "_" + numFound), visitor.endPart());
+      }
+    }
+  }
+
+  /**
+   * Sets the context variables for each field of a URL-encoded form, with the same names as for
+   * the parts of a multipart form. A field has no content-type of its own; it is published as
+   * text/plain, with its value as both bytes and a string. The value accumulates as it arrives,
+   * against the reservation; in metadata mode, it goes to the visitors and is only counted.
+   */
+  private class FieldPublisher implements FieldListener {
+    private final MessageContext msgCtxt;
+    // an array, as in FormListener
+    private final PartVisitor[] visitors;
+    private final boolean metadataOnly;
+    private final MemoryBudget.Reservation reservation;
+    private final long budgetWaitMillis;
+    final List<String> names = new ArrayList<String>();
+    final PartBuffer value;
+    private long valueLength;
+    private long retained;
+
+    FieldPublisher(
+        MessageContext msgCtxt,
+        List<PartVisitor> visitors,
+        boolean metadataOnly,
+        MemoryBudget.Reservation reservation,
+        long budgetWaitMillis) {
+      this.msgCtxt = msgCtxt;
+      this.visitors = visitors.toArray(new PartVisitor[0]);
+      this.value = scratchBuffers.get().body;
+      this.metadataOnly = metadataOnly;
+      this.reservation = reservation;
+      this.budgetWaitMillis = budgetWaitMillis;
+    }
+
+    public void onFieldStart(String name) {
+      names.add(unsafeFileNameChars.matcher(name).replaceAll(""));
+      value.reset();
+      valueLength = 0;
+      for (PartVisitor visitor : visitors) {
+        visitor.startPart();
+      }
+    }
+
+    public void onValueChunk(ByteBuffer chunk) {
+      for (PartVisitor visitor : visitors) {
+        visitor.visit(chunk);
+      }
+      valueLength += chunk.remaining();
+      if (metadataOnly) {
+        return;
+      }
+      retained += chunk.remaining();
+      if (retained > reservation.heldBytes()) {
+        reserveOrFail(reservation, retained, budgetWaitMillis);
+      }
+      value.write(chunk);
+    }
+
+    public void onFieldEnd() {
+      int numFound = names.size();
+      for (PartVisitor visitor : visitors) {
+        msgCtxt.setVariable(
+            varName("item_" + visitor.getName() + "_" + numFound), visitor.endPart());
+      }
+      msgCtxt.setVariable(varName("item_filename_" + numFound), names.get(numFound - 1));
+      msgCtxt.setVariable(varName("item_content-type_" + numFound), "text/plain");
+      msgCtxt.setVariable(varName("item_size_" + numFound), Long.toString(valueLength));
+      if (!metadataOnly) {
+        byte[] bytes = value.toByteArray();
+        msgCtxt.setVariable(varName("item_content_" + numFound), bytes);
+        msgCtxt.setVariable(
+            varName("item_content_" + numFound + "_string"),
+            new String(bytes, StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  private static boolean isUrlEncoded(String contentType) {
+    return contentType != null
+        && contentType.trim().toLowerCase().startsWith("application/x-www-form-urlencoded");
+  }
+
+  /** Parses a URL-encoded form as it is read, and publishes its fields. */
+  private List<String> parseUrlEncoded(
+      Message message,
+      List<PartVisitor> visitors,
+      boolean metadataOnly,
+      MemoryBudget.Reservation reservation,
+      long budgetWaitMillis,
+      Deadline deadline,
+      MessageContext msgCtxt)
+      throws Exception {
+    FieldPublisher publisher =
+        new FieldPublisher(msgCtxt, visitors, metadataOnly, reservation, budgetWaitMillis);
+    UrlEncodedParser parser = new UrlEncodedParser(publisher);
+    try {
+      InputStream content = message.getContentAsStream();
+      if (content != null) {
+        String contentEncoding = message.getHeader("content-encoding");
+        int maxRatio = getMaxDecompressionRatio(msgCtxt);
+        content = DecompressingInputStream.forEncoding(content, contentEncoding, maxRatio);
+        try (InputStream is = content) {
+          byte[] buf = scratchBuffers.get().read;
+          int n;
+          long bytesRead = 0;
+          while ((n = is.read(buf, 0, buf.length)) != -1) {
+            parser.feed(buf, 0, n);
+            bytesRead += n;
+            checkDeadline(deadline, bytesRead, publisher.names.size(), msgCtxt);
+          }
+        }
+      }
+      parser.finish();
+    } finally {
+      if (publisher.value.capacity() > RETAINED_BUFFER_SIZE) {
+        scratchBuffers.remove();
+      }
+    }
+    return publisher.names;
+  }
+
+  /** The length of the content as it will be buffered, or 0 if it is not known in advance. */
+  private static long expectedLength(Message message) {
+    String contentLength = message.getHeader("content-length");
+    if (message.getHeader("content-encoding") != null || contentLength == null) {
+      return 0;
+    }
+    try {
+      return Math.max(0, Long.parseLong(contentLength.trim()));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private void publishItems(List<String> names, MessageContext msgCtxt) {
+    msgCtxt.setVariable(varName("itemcount"), names.size() + "");
+    if (names.size() > 0) {
+      msgCtxt.setVariable(varName("items"), String.join(", ", names));
+    }
+  }
+
+  /**
+   * Reads the whole content of the message into one array, and indexes the form in it. When the
+   * message is not encoded and has a content-length, the array is allocated once at its final
+   * size. The index retains the array; it is not copied again. A body of at least the
+   * parallel-threshold is indexed on the common ForkJoin pool.
+   */
+  private FormIndex buildIndex(
+      Message message,
+      String boundary,
+      MemoryBudget.Reservation reservation,
+      long budgetWaitMillis,
+      Deadline deadline,
+      MessageContext msgCtxt)
+      throws Exception {
+    String contentEncoding = message.getHeader("content-encoding");
+    int initialSize = BUFFER_SIZE;
+    String contentLength = message.getHeader("content-length");
+    if (contentEncoding == null && contentLength != null) {
+      try {
+        long length = Long.parseLong(contentLength.trim());
+        initialSize = (int) Math.max(0, Math.min(length, MAX_PRESIZE));
+      } catch (NumberFormatException e) {
+        // not known
+      }
+    }
+    PartBuffer body = new PartBuffer(initialSize);
+    InputStream content = message.getContentAsStream();
+    if (content != null) {
+      int maxRatio = getMaxDecompressionRatio(msgCtxt);
+      content = DecompressingInputStream.forEncoding(content, contentEncoding, maxRatio);
+      try (InputStream is = content) {
+        byte[] buf = scratchBuffers.get().read;
+        int n;
+        while ((n = is.read(buf, 0, buf.length)) != -1) {
+          body.write(buf, 0, n);
+          if (body.size() > reservation.heldBytes()) {
+            reserveOrFail(reservation, body.size(), budgetWaitMillis);
+          }
+          checkDeadline(deadline, body.size(), 0, msgCtxt);
+        }
+      }
+    }
+    int parallelThreshold = getParallelThreshold(msgCtxt);
+    if (parallelThreshold >= 0 && body.size() >= parallelThreshold) {
+      return FormIndex.build(body.array(), body.size(), boundary, ForkJoinPool.commonPool());
+    }
+    return FormIndex.build(body.array(), body.size(), boundary);
+  }
+
+  /**
+   * Publishes the form index, and the variables for each part. The content of each part is a
+   * PartContent slice of the retained body, not a copy.
+   */
+  private List<String> publishIndex(
+      FormIndex index, List<PartVisitor> visitors, MessageContext msgCtxt) {
+    msgCtxt.setVariable(varName("form_index"), index);
+    List<String> names = new ArrayList<String>();
+    for (FormIndex.Entry entry : index.getParts()) {
+      int numFound = names.size() + 1;
+      String fileName = unsafeFileNameChars.matcher(entry.getName()).replaceAll("");
+      names.add(fileName);
+      PartContent content = index.content(entry);
+      msgCtxt.setVariable(varName("item_filename_" + numFound), fileName);
+      msgCtxt.setVariable(varName("item_content_" + numFound), content);
+      if ("text/plain".equals(entry.getContentType())) {
+        ByteBuffer text = index.buffer(entry);
+        msgCtxt.setVariable(
+            varName("item_content_" + numFound + "_string"),
+            StandardCharsets.UTF_8.decode(text).toString());
+      }
+      msgCtxt.setVariable(varName("item_content-type_" + numFound), entry.getContentType());
+      msgCtxt.setVariable(varName("item_size_" + numFound), entry.getLength() + "");
+      for (PartVisitor visitor : visitors) {
+        visitor.startPart();
+        visitor.visit(index.slice(entry));
+        msgCtxt.setVariable(
+            varName("item_" + visitor.getName() + "_" + numFound), visitor.endPart());
+      }
+    }
+    return names;
+  }
+
   public ExecutionResult execute(final MessageContext msgCtxt, final ExecutionContext execContext) {
     try {
       String source = getSource(msgCtxt);
       Message message = (Message) msgCtxt.getVariable(source);
       if (message == null) {
-        throw new IllegalStateException("source message is null.");
+        throw error(SOURCE_IS_NULL);
       }
 
-      String ctype = message.getHeader("content-type");
-      if (ctype == null) {
-        throw new IllegalStateException("missing content-type header");
-      }
-      if (!ctype.contains("multipart/form-data")) {
-        throw new IllegalStateException("content-type does not contain multipart/form-data");
-      }
-      if (!ctype.contains("boundary")) {
-        throw new IllegalStateException("content-type does not contain boundary parameter");
-      }
-      String[] ctypeArray = ctype.split(";");
-      List<String> ctypeList = Arrays.asList(ctypeArray);
-      String boundary = ctypeList
-          .stream()
-          .map(String::trim)
-          .filter(ct -> ct.toLowerCase().contains("boundary"))
-          .map(ct -> {
-            String[] cta = ct.split("=");
-            if (cta.length == 2) {
-              return cta[1].trim();
+      String contentType = message.getHeader("content-type");
+      List<PartVisitor> visitors = PartVisitors.create(getPartVisitors(msgCtxt));
+      String mode = getMode(msgCtxt);
+      Deadline deadline = getDeadline(msgCtxt);
+      String onBudgetExhausted = getOnBudgetExhausted(msgCtxt, "metadata");
+      long budgetWaitMillis =
+          onBudgetExhausted.equals("wait") ? getBudgetWaitMillis(msgCtxt) : 0;
+      try (MemoryBudget.Reservation reservation = MemoryBudget.shared().open()) {
+        // admit the form on its declared length; content of unknown length is reserved as it is
+        // read. In metadata mode, nothing is retained, so nothing is reserved. On success, the
+        // bytes stay reserved for as long as the flow keeps the parts.
+        if (!mode.equals("metadata")) {
+          long expected = expectedLength(message);
+          if (onBudgetExhausted.equals("metadata")) {
+            if (!reservation.ensure(expected, 0)) {
+              mode = "metadata";
+              msgCtxt.setVariable(varName("budget_fallback"), mode);
             }
-            return "";
-          })
-          .findFirst()
-          .orElse("");
-      if (boundary.isEmpty()) {
-        throw new IllegalStateException("multipart/form-data content-type does not contain 'boundary'");
-      }
-
-      StreamSearcher searcher = new StreamSearcher(boundary.getBytes(StandardCharsets.UTF_8));
-      List<String> names = new ArrayList<String>();
-      try (BufferedInputStream bis =
-          new BufferedInputStream(message.getContentAsStream(), BUFFER_SIZE)) {
-        byte[] buf = null;
-        int numFound = 0;
-        long position = searcher.search(bis);
-        if (position != -1) {
-          do {
-            buf = searcher.searchAndExtract(bis);
-            if (buf != null) {
-              numFound++;
-              Part part = Part.parse(buf);
-              if (part == null) {
-                throw new IllegalStateException("part is null");
-              }
-              if (part.getName() == null) {
-                throw new IllegalStateException("part.getName() is null");
-              }
-              String fileName = part.getName().replaceAll("[^a-zA-Z0-9_\\. ]", "");
-              names.add(fileName);
-              msgCtxt.setVariable(varName("item_filename_" + numFound), fileName);
-              msgCtxt.setVariable(varName("item_content_" + numFound), part.getPartContent());
-              if ("text/plain".equals(part.getContentType())) {
-                msgCtxt.setVariable(
-                    varName("item_content_" + numFound + "_string"),
-                    new String(part.getPartContent()));
+          } else {
+            reserveOrFail(reservation, expected, budgetWaitMillis);
+          }
+        }
+        if (isUrlEncoded(contentType)) {
+          List<String> names =
+              parseUrlEncoded(
+                  message,
+                  visitors,
+                  mode.equals("metadata"),
+                  reservation,
+                  budgetWaitMillis,
+                  deadline,
+                  msgCtxt);
+          publishItems(names, msgCtxt);
+          keepReserved(reservation, msgCtxt);
+          return ExecutionResult.SUCCESS;
+        }
+        String boundary = MultipartParser.boundaryOf(contentType);
+
+        if (mode.equals("index")) {
+          FormIndex index =
+              buildIndex(message, boundary, reservation, budgetWaitMillis, deadline, msgCtxt);
+          publishItems(publishIndex(index, visitors, msgCtxt), msgCtxt);
+          keepReserved(reservation, msgCtxt);
+          return ExecutionResult.SUCCESS;
+        }
+        boolean metadataOnly = mode.equals("metadata");
+        ContentStore store = metadataOnly ? null : getContentStore(msgCtxt);
+        FormListener listener =
+            new FormListener(
+                msgCtxt,
+                visitors,
+                store,
+                getContentStoreThreshold(msgCtxt),
+                metadataOnly,
+                reservation,
+                budgetWaitMillis);
+        boolean parsed = false;
+        try {
+          MultipartParser parser = new MultipartParser(boundary, listener);
+          String contentEncoding = message.getHeader("content-encoding");
+          int maxRatio = getMaxDecompressionRatio(msgCtxt);
+          InputStream content = message.getContentAsStream();
+          if (content != null) {
+            content = DecompressingInputStream.forEncoding(content, contentEncoding, maxRatio);
+            try (InputStream is = content) {
+              byte[] buf = scratchBuffers.get().read;
+              int n;
+              long bytesRead = 0;
+              while (!parser.isComplete() && (n = is.read(buf, 0, buf.length)) != -1) {
+                parser.feed(buf, 0, n);
+                bytesRead += n;
+                checkDeadline(deadline, bytesRead, listener.names.size(), msgCtxt);
               }
-              msgCtxt.setVariable(varName("item_content-type_" + numFound), part.getContentType());
-              msgCtxt.setVariable(varName("item_size_" + numFound), part.getSize() + "");
             }
-          } while (buf != null);
-        }
-        msgCtxt.setVariable(varName("itemcount"), names.size() + "");
-        if (names.size() > 0) {
-          msgCtxt.setVariable(varName("items"), String.join(", ", names));
+          }
+          parser.finish();
+          parsed = true;
+        } finally {
+          if (listener.body.capacity() > RETAINED_BUFFER_SIZE) {
+            scratchBuffers.remove();
+          }
+          if (store instanceof Closeable) {
+            if (parsed) {
+              msgCtxt.setVariable(varName("content_store"), store);
+            } else {
+              ((Closeable) store).close();
+            }
+          }
         }
-      } finally {
+
+        publishItems(listener.names, msgCtxt);
+        keepReserved(reservation, msgCtxt);
+        return ExecutionResult.SUCCESS;
       }
-      return ExecutionResult.SUCCESS;
     } catch (IllegalStateException exc1) {
       if (getDebug()) {
         String stacktrace = getStackTraceAsString(exc1);
@@ -0,0 +1,189 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.callouts;
+
+import com.google.apigee.multipartform.FieldListener;
+import com.google.apigee.multipartform.FormDescriptor;
+import com.google.apigee.multipartform.FormIndex;
+import com.google.apigee.multipartform.MultipartForm;
+import com.google.apigee.multipartform.MultipartParser;
+import com.google.apigee.multipartform.Part;
+import com.google.apigee.multipartform.PartContent;
+import com.google.apigee.multipartform.PartListener;
+import com.google.apigee.multipartform.PartSpec;
+import com.google.apigee.multipartform.PartVisitor;
+import com.google.apigee.multipartform.PartVisitors;
+import com.google.apigee.multipartform.UrlEncodedParser;
+import com.google.apigee.stream.CompressingInputStream;
+import com.google.apigee.stream.DecompressingInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+
+/**
+ * Runs a synthetic create-then-parse round trip through the engine, so that the first requests
+ * after a deployment do not pay for class loading, the lookup of the JSON provider, the seeding of
+ * SecureRandom, and the compilation of the regular expressions. It runs at most once per JVM.
+ * Further iterations, which give the JIT the profile it needs to compile the hot loops fully, run
+ * on a low-priority daemon thread, so that they do not delay the deployment.
+ */
+final class WarmUp {
+  private static final AtomicBoolean started = new AtomicBoolean();
+  private static final int BINARY_SIZE = 48 * 1024;
+  private static final byte[] BINARY = binaryContent();
+  private static final String DESCRIPTOR =
+      "{ \"note.txt\": { \"content-var\": \"note\", \"content-type\": \"text/plain\" },"
+          + " \"image.bin\": { \"content-var\": \"image\","
+          + " \"content-type\": \"application/octet-stream\", \"file-name\": \"image.bin\" } }";
+  private static final byte[] URL_ENCODED =
+      "greeting=hello+world&expr=a%3Db%26c&flag".getBytes(StandardCharsets.UTF_8);
+
+  private WarmUp() {}
+
+  /** Starts the warm-up, unless it has already started in this JVM. */
+  static void start(int iterations) {
+    if (!started.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      roundTrip();
+    } catch (Exception e) {
+      // a failed warm-up must not fail the callout; the first request pays instead
+      return;
+    }
+    if (iterations > 1) {
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  for (int i = 1; i < iterations; i++) {
+                    roundTrip();
+                  }
+                } catch (Exception e) {
+                  // stop warming
+                }
+              },
+              "mpf-warm-up");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      thread.start();
+    }
+  }
+
+  // Random, so that it does not compress beyond the decompression limit, with dashes and line
+  // breaks, so that the parser's slow path is exercised as well as its scan for the delimiter.
+  private static byte[] binaryContent() {
+    byte[] content = new byte[BINARY_SIZE];
+    new Random(20260628L).nextBytes(content);
+    for (int i = 0; i < content.length; i += 1024) {
+      content[i] = '\r';
+      content[i + 1] = '\n';
+      content[i + 2] = '-';
+      content[i + 3] = '-';
+    }
+    return content;
+  }
+
+  /** Creates a form, compresses and inflates it, then parses and indexes it. */
+  static int roundTrip() throws IOException {
+    List<Part> parts = new ArrayList<Part>();
+    for (PartSpec spec : FormDescriptor.parse(DESCRIPTOR)) {
+      byte[] content =
+          spec.getContentVar().equals("note")
+              ? "Hello World".getBytes(StandardCharsets.UTF_8)
+              : BINARY;
+      Part part = new Part(spec.getName()).withContentType(spec.getContentType());
+      if (spec.getFileName() != null) {
+        part.setFileName(spec.getFileName());
+      }
+      parts.add(part.withContent(PartContent.of(content)));
+    }
+    String boundary = "--------------------" + CalloutBase.randomAlphanumeric(14);
+    MultipartForm form = new MultipartForm(boundary, parts);
+    byte[] created = CalloutBase.streamToByteArray(form.openStream());
+
+    InputStream compressed =
+        CompressingInputStream.forEncoding(
+            PartContent.of(created).openStream(), "gzip", Deflater.BEST_SPEED);
+    InputStream inflated = DecompressingInputStream.forEncoding(compressed, "gzip", 100);
+    List<PartVisitor> visitors = PartVisitors.create("sha256,crc32c,bytes");
+    Counter counter = new Counter(visitors);
+    MultipartParser parser =
+        new MultipartParser(
+            MultipartParser.boundaryOf("multipart/form-data; boundary=" + boundary), counter);
+    byte[] buf = new byte[8192];
+    try (InputStream is = inflated) {
+      int n;
+      while (!parser.isComplete() && (n = is.read(buf, 0, buf.length)) != -1) {
+        parser.feed(buf, 0, n);
+      }
+    }
+    parser.finish();
+
+    FormIndex index = FormIndex.build(created, created.length, boundary);
+    UrlEncodedParser fields = new UrlEncodedParser(counter);
+    fields.feed(URL_ENCODED, 0, URL_ENCODED.length);
+    fields.finish();
+    return counter.parts + index.getParts().size() + fields.getFieldCount();
+  }
+
+  private static final class Counter implements PartListener, FieldListener {
+    private final PartVisitor[] visitors;
+    int parts;
+
+    Counter(List<PartVisitor> visitors) {
+      this.visitors = visitors.toArray(new PartVisitor[0]);
+    }
+
+    public void onPartStart() {
+      for (PartVisitor visitor : visitors) {
+        visitor.startPart();
+      }
+    }
+
+    public void onHeader(String name, String value) {
+      if (name.equalsIgnoreCase("content-disposition")) {
+        Part.nameFromContentDisposition(value);
+      }
+    }
+
+    public void onBodyChunk(ByteBuffer chunk) {
+      for (PartVisitor visitor : visitors) {
+        visitor.visit(chunk);
+      }
+    }
+
+    public void onPartEnd() {
+      for (PartVisitor visitor : visitors) {
+        visitor.endPart();
+      }
+      parts++;
+    }
+
+    public void onFieldStart(String name) {}
+
+    public void onValueChunk(ByteBuffer chunk) {}
+
+    public void onFieldEnd() {}
+  }
+}
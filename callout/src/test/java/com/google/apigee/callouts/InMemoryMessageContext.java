@@ -0,0 +1,191 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.callouts;
+
+import com.apigee.flow.execution.ExecutionContext;
+import com.apigee.flow.message.Connection;
+import com.apigee.flow.message.Message;
+import com.apigee.flow.message.MessageContext;
+import com.apigee.flow.message.MessageFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A plain-Java, in-memory stand-in for the Apigee MessageContext and Message, for tests that need
+ * many independent contexts, possibly on many threads. Unlike the JMockit MockUp in {@link
+ * TestBase}, each call to {@link #create()} returns a fresh context with its own variables and
+ * message, and no instrumentation is involved.
+ *
+ * <p>The interfaces are implemented with dynamic proxies, dispatching on the method name, so only
+ * the methods the callouts use are supported; any other method throws
+ * UnsupportedOperationException. A single context is not thread safe, just as in Apigee, where a
+ * context belongs to one request.
+ */
+public final class InMemoryMessageContext {
+  private InMemoryMessageContext() {}
+
+  public static MessageContext create() {
+    return proxy(MessageContext.class, new ContextHandler());
+  }
+
+  public static Message newMessage() {
+    return proxy(Message.class, new MessageHandler());
+  }
+
+  /** The callouts do not use the execution context; every method of this one is unsupported. */
+  public static ExecutionContext newExecutionContext() {
+    return proxy(
+        ExecutionContext.class,
+        new Handler() {
+          Object handle(String name, Object[] args) {
+            throw unsupported(name);
+          }
+        });
+  }
+
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return type.cast(
+        Proxy.newProxyInstance(
+            InMemoryMessageContext.class.getClassLoader(), new Class<?>[] {type}, handler));
+  }
+
+  private abstract static class Handler implements InvocationHandler {
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "toString":
+          return getClass().getSimpleName() + "@" + Integer.toHexString(hashCode());
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "equals":
+          return proxy == args[0];
+        default:
+          return handle(method.getName(), (args == null) ? new Object[0] : args);
+      }
+    }
+
+    abstract Object handle(String name, Object[] args);
+
+    static UnsupportedOperationException unsupported(String name) {
+      return new UnsupportedOperationException(name);
+    }
+  }
+
+  private static class ContextHandler extends Handler {
+    private final Map<String, Object> variables = new HashMap<String, Object>();
+    private final Message message = newMessage();
+
+    Object handle(String name, Object[] args) {
+      switch (name) {
+        case "getVariable":
+          return args[0].equals("message") ? message : variables.get(args[0]);
+        case "setVariable":
+          variables.put((String) args[0], args[1]);
+          return true;
+        case "removeVariable":
+          return variables.remove(args[0]) != null;
+        case "getMessage":
+          return message;
+        case "createMessage":
+          return newMessage();
+        case "getClientConnection":
+          return proxy(Connection.class, new ConnectionHandler());
+        default:
+          throw unsupported(name);
+      }
+    }
+  }
+
+  private static class ConnectionHandler extends Handler {
+    Object handle(String name, Object[] args) {
+      if (name.equals("getMessageFactory")) {
+        // createMessage ignores the transport message, so the factory need not produce one
+        return proxy(
+            MessageFactory.class,
+            new Handler() {
+              Object handle(String name, Object[] args) {
+                if (name.equals("createRequest")) {
+                  return null;
+                }
+                throw unsupported(name);
+              }
+            });
+      }
+      throw unsupported(name);
+    }
+  }
+
+  private static class MessageHandler extends Handler {
+    private final Map<String, Object> variables = new HashMap<String, Object>();
+    private final Map<String, String> headers =
+        new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+    private InputStream content;
+
+    Object handle(String name, Object[] args) {
+      switch (name) {
+        case "getHeader":
+          return headers.get(args[0]);
+        case "setHeader":
+          headers.put((String) args[0], args[1].toString());
+          return true;
+        case "removeHeader":
+          return headers.remove(args[0]) != null;
+        case "getContentAsStream":
+          return content;
+        case "getContent":
+          return (content == null) ? null : new String(readAll(content), StandardCharsets.UTF_8);
+        case "setContent":
+          content =
+              (args[0] instanceof String)
+                  ? new ByteArrayInputStream(((String) args[0]).getBytes(StandardCharsets.UTF_8))
+                  : (InputStream) args[0];
+          return null;
+        case "getVariable":
+          return variables.get(args[0]);
+        case "setVariable":
+          variables.put((String) args[0], args[1]);
+          return true;
+        case "removeVariable":
+          return variables.remove(args[0]) != null;
+        default:
+          throw unsupported(name);
+      }
+    }
+  }
+
+  static byte[] readAll(InputStream is) {
+    try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+      byte[] data = new byte[8192];
+      int n;
+      while ((n = is.read(data, 0, data.length)) != -1) {
+        os.write(data, 0, n);
+      }
+      return os.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
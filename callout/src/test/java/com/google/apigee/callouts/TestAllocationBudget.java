@@ -0,0 +1,268 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.callouts;
+
+import com.apigee.flow.execution.ExecutionContext;
+import com.apigee.flow.execution.ExecutionResult;
+import com.apigee.flow.message.Message;
+import com.apigee.flow.message.MessageContext;
+import com.google.apigee.multipartform.MultipartForm;
+import com.google.apigee.multipartform.Part;
+import com.google.apigee.stream.StreamSearcher;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Measures the bytes allocated per operation on the hot paths, and fails when an operation exceeds
+ * its recorded budget. Budgets are expressed as a multiple of the payload size plus a fixed
+ * allowance, so that copy amplification, such as an extra copy of every part, breaks the build.
+ * The payload is 1MB, so that the fixed allowance, which covers the per-call work such as parsing
+ * a descriptor, is small next to a copy of the content, and the ratios are recorded close to the
+ * measured ones. When a change legitimately moves a number, re-record the budget here, in the same
+ * change.
+ *
+ * <p>Requires a JVM that supports com.sun.management.ThreadMXBean#getThreadAllocatedBytes; the
+ * tests are skipped otherwise.
+ */
+public class TestAllocationBudget {
+  private static final int CONTENT_SIZE = 1000 * 1000;
+  private static final String BOUNDARY = "--------------------BUDGET0123456789";
+  private static final int WARMUP = 50;
+  private static final int WARMUP_ROUNDS = 4;
+  private static final int RUNS = 10;
+  private static final double TOLERANCE = 0.05;
+
+  private interface Operation {
+    void run() throws Exception;
+  }
+
+  private com.sun.management.ThreadMXBean threadBean;
+  private byte[] content;
+  private byte[] form;
+
+  @BeforeClass
+  public void setup() throws Exception {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      throw new SkipException("com.sun.management.ThreadMXBean is not available");
+    }
+    threadBean = (com.sun.management.ThreadMXBean) bean;
+    if (!threadBean.isThreadAllocatedMemorySupported()) {
+      throw new SkipException("thread allocated memory is not supported");
+    }
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+
+    content = new byte[CONTENT_SIZE];
+    new Random(37).nextBytes(content);
+    List<Part> parts = new ArrayList<Part>();
+    parts.add(new Part("description").withContentType("text/plain").withPartContent(text("logo")));
+    parts.add(
+        new Part("file")
+            .withContentType("application/octet-stream")
+            .withFileName("content.bin")
+            .withPartContent(content));
+    form = readAll(new MultipartForm(BOUNDARY, parts).openStream());
+  }
+
+  private static byte[] text(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] readAll(InputStream in) throws Exception {
+    return InMemoryMessageContext.readAll(in);
+  }
+
+  /** The fewest bytes allocated by any of several runs. */
+  private long allocatedBytes(Operation op) throws Exception {
+    long threadId = Thread.currentThread().getId();
+    long least = Long.MAX_VALUE;
+    for (int i = 0; i < RUNS; i++) {
+      long before = threadBean.getThreadAllocatedBytes(threadId);
+      op.run();
+      least = Math.min(least, threadBean.getThreadAllocatedBytes(threadId) - before);
+    }
+    return least;
+  }
+
+  /**
+   * Fails if the operation allocates more than its budget, with a tolerance. The count depends on
+   * the JIT: until a method is compiled, and inlined where escape analysis can remove its
+   * short-lived objects, such as iterators, those objects are counted. Compilation happens in the
+   * background, so an operation over budget is warmed up again, a few times, before it fails.
+   */
+  private void assertBudget(String label, Operation op, long payloadSize, double ratio, long fixed)
+      throws Exception {
+    long budget = (long) ((payloadSize * ratio + fixed) * (1 + TOLERANCE));
+    long allocated = Long.MAX_VALUE;
+    for (int round = 0; round < WARMUP_ROUNDS && allocated > budget; round++) {
+      for (int i = 0; i < WARMUP; i++) {
+        op.run();
+      }
+      allocated = allocatedBytes(op);
+    }
+    Assert.assertTrue(
+        allocated <= budget,
+        String.format("%s allocated %d bytes, over the budget of %d", label, allocated, budget));
+  }
+
+  @Test
+  public void streamSearcher_SearchAndExtract() throws Exception {
+    byte[] delimiter = text("\r\n--" + BOUNDARY);
+    StreamSearcher searcher = new StreamSearcher(delimiter);
+    // the extracted range begins after the leading CRLF and ends before the delimiter's CRLF
+    byte[] payload = new byte[2 + content.length + delimiter.length + 2];
+    System.arraycopy(content, 0, payload, 2, content.length);
+    System.arraycopy(delimiter, 0, payload, 2 + content.length, delimiter.length);
+    // the buffer doubles as it grows, which costs 2.1x at this size, and the result 1x
+    assertBudget(
+        "searchAndExtract",
+        () -> searcher.searchAndExtract(new ByteArrayInputStream(payload)),
+        payload.length,
+        3.15,
+        4096);
+  }
+
+  @Test
+  public void part_Parse() throws Exception {
+    byte[] headers =
+        text(
+            "Content-Disposition: form-data; name=\"file\"; filename=\"content.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n");
+    byte[] payload = new byte[headers.length + content.length];
+    System.arraycopy(headers, 0, payload, 0, headers.length);
+    System.arraycopy(content, 0, payload, headers.length, content.length);
+    // the content is not copied
+    assertBudget("Part.parse", () -> Part.parse(payload), payload.length, 0.0, 4096);
+  }
+
+  @Test
+  public void multipartForm_OpenStream() throws Exception {
+    List<Part> parts = new ArrayList<Part>();
+    parts.add(new Part("description").withContentType("text/plain").withPartContent(text("logo")));
+    parts.add(
+        new Part("file")
+            .withContentType("application/octet-stream")
+            .withFileName("content.bin")
+            .withPartContent(content));
+    MultipartForm mpf = new MultipartForm(BOUNDARY, parts);
+    byte[] sink = new byte[8192];
+    // parts are streamed from their content, not copied
+    assertBudget(
+        "openStream",
+        () -> {
+          try (InputStream in = mpf.openStream()) {
+            while (in.read(sink, 0, sink.length) != -1) {}
+          }
+        },
+        form.length,
+        0.0,
+        16384);
+  }
+
+  @Test
+  public void parser_Execute() throws Exception {
+    MultipartFormParserV2 callout = new MultipartFormParserV2(new Properties());
+    ExecutionContext exeCtxt = InMemoryMessageContext.newExecutionContext();
+    // the body buffer doubles as it grows beyond the retained size, which costs 2.1x at this
+    // size, and the published content of each part 1x
+    assertBudget(
+        "parse",
+        () -> {
+          MessageContext msgCtxt = InMemoryMessageContext.create();
+          Message message = msgCtxt.getMessage();
+          message.setContent(new ByteArrayInputStream(form));
+          message.setHeader("content-type", "multipart/form-data; boundary=" + BOUNDARY);
+          Assert.assertEquals(callout.execute(msgCtxt, exeCtxt), ExecutionResult.SUCCESS);
+        },
+        form.length,
+        3.15,
+        16384);
+  }
+
+  @Test
+  public void parser_Execute_Metadata() throws Exception {
+    List<Part> parts = new ArrayList<Part>();
+    parts.add(
+        new Part("file")
+            .withContentType("application/octet-stream")
+            .withFileName("large.bin")
+            .withPartContent(new byte[4 * 1024 * 1024]));
+    byte[] large = readAll(new MultipartForm(BOUNDARY, parts).openStream());
+    Properties props = new Properties();
+    props.put("mode", "metadata");
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    ExecutionContext exeCtxt = InMemoryMessageContext.newExecutionContext();
+    // bodies are counted, not retained: the cost does not depend on the payload size
+    assertBudget(
+        "parse metadata",
+        () -> {
+          MessageContext msgCtxt = InMemoryMessageContext.create();
+          Message message = msgCtxt.getMessage();
+          message.setContent(new ByteArrayInputStream(large));
+          message.setHeader("content-type", "multipart/form-data; boundary=" + BOUNDARY);
+          Assert.assertEquals(callout.execute(msgCtxt, exeCtxt), ExecutionResult.SUCCESS);
+        },
+        large.length,
+        0.0,
+        16384);
+  }
+
+  @Test
+  public void creator_Execute() throws Exception {
+    String descriptorJson =
+        "{\n"
+            + "  \"description\" : { \"content-var\" : \"description\" },\n"
+            + "  \"file\" : {\n"
+            + "    \"content-var\" : \"contentBytes\",\n"
+            + "    \"content-type\" : \"application/octet-stream\",\n"
+            + "    \"file-name\" : \"content.bin\"\n"
+            + "  }\n"
+            + "}\n";
+    Properties props = new Properties();
+    props.put("descriptor", descriptorJson);
+    MultipartFormCreatorV2 callout = new MultipartFormCreatorV2(props);
+    ExecutionContext exeCtxt = InMemoryMessageContext.newExecutionContext();
+    byte[] sink = new byte[8192];
+    // creating the form, and reading it out, copies no content; parsing the descriptor is most
+    // of the fixed cost
+    assertBudget(
+        "create",
+        () -> {
+          MessageContext msgCtxt = InMemoryMessageContext.create();
+          msgCtxt.setVariable("description", "logo");
+          msgCtxt.setVariable("contentBytes", content);
+          Assert.assertEquals(callout.execute(msgCtxt, exeCtxt), ExecutionResult.SUCCESS);
+          try (InputStream in = msgCtxt.getMessage().getContentAsStream()) {
+            while (in.read(sink, 0, sink.length) != -1) {}
+          }
+        },
+        form.length,
+        0.0,
+        32768);
+  }
+}
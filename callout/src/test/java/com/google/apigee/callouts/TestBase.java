@@ -21,6 +21,7 @@ import com.apigee.flow.message.Message;
 import com.apigee.flow.message.MessageContext;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -34,6 +35,7 @@ import java.util.Map;
 import mockit.Mock;
 import mockit.MockUp;
 import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 
 
@@ -46,6 +48,15 @@ public abstract class TestBase {
   Message message;
   ExecutionContext exeCtxt;
 
+  // as a flow that ends with ContentReleaser, so that no test leaves the shared budget held
+  @AfterMethod()
+  public void afterMethod() throws IOException {
+    Object lease = msgCtxt.getVariable("mpf_memory_lease");
+    if (lease instanceof Closeable) {
+      ((Closeable) lease).close();
+    }
+  }
+
   @BeforeMethod()
   public void beforeMethod() {
 
@@ -158,6 +169,14 @@ public abstract class TestBase {
             return true;
           }
 
+          @Mock()
+          public boolean removeHeader(final String name) {
+            if (headers != null) {
+              headers.remove(name);
+            }
+            return true;
+          }
+
           @Mock()
           public String getHeader(final String name) {
             if (headers == null) {
@@ -18,7 +18,12 @@ package com.google.apigee.callouts;
 
 import com.apigee.flow.execution.ExecutionResult;
 import com.apigee.flow.message.Message;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Properties;
+import java.util.Random;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -59,4 +64,158 @@ public class TestContentSetter extends TestBase {
     Object output = msg.getContent();
     Assert.assertNotNull(output, "no output");
   }
+
+  @Test
+  public void setContent_MultipleSources() throws Exception {
+    msgCtxt.setVariable("message.content", "original-body");
+    msgCtxt.setVariable("var1", "from-a-variable|".getBytes(StandardCharsets.UTF_8));
+    // left over from an earlier step
+    msgCtxt.setVariable("cs_payload_length", 13);
+
+    Properties props = new Properties();
+    props.put("contentSources",
+        "[ {\"text\": \"prefix|\"}, {\"var\": \"var1\"}, {\"message\": \"message\"} ]");
+    props.put("contentType", "text/plain");
+
+    ContentSetter callout = new ContentSetter(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertNull(msgCtxt.getVariable("cs_error"), "error");
+
+    // the message has no content-length header, so the total length is unknown
+    Assert.assertNull(msgCtxt.getVariable("cs_payload_length"), "payload_length");
+    Message msg = msgCtxt.getMessage();
+    Assert.assertNull(msg.getHeader("content-length"), "content-length");
+    Assert.assertEquals(msg.getContent(), "prefix|from-a-variable|original-body");
+    Assert.assertEquals(msg.getHeader("content-type"), "text/plain");
+  }
+
+  @Test
+  public void setContent_MultipleSources_KnownLength() throws Exception {
+    msgCtxt.setVariable("var1", "0123456789");
+
+    Properties props = new Properties();
+    props.put("contentSources", "[ {\"var\": \"var1\"}, {\"text\": \"--\"}, {\"var\": \"var1\"} ]");
+
+    ContentSetter callout = new ContentSetter(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertEquals(
+        msgCtxt.getVariable("cs_payload_length"), Integer.valueOf(22), "payload_length");
+    Message msg = msgCtxt.getMessage();
+    Assert.assertEquals(msg.getHeader("content-length"), "22");
+    Assert.assertEquals(msg.getContent(), "0123456789--0123456789");
+  }
+
+  @Test
+  public void setContent_UnknownSourceKind() throws Exception {
+    Properties props = new Properties();
+    props.put("contentSources", "[ {\"file\": \"/etc/passwd\"} ]");
+
+    ContentSetter callout = new ContentSetter(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertEquals(msgCtxt.getVariable("cs_error"), "unknown kind of content source: file");
+  }
+
+  private static byte[] readContent(Message msg) throws Exception {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    byte[] data = new byte[777];
+    int n;
+    try (InputStream is = msg.getContentAsStream()) {
+      while ((n = is.read(data, 0, data.length)) != -1) {
+        os.write(data, 0, n);
+      }
+    }
+    return os.toByteArray();
+  }
+
+  @Test
+  public void setContent_Base64Decode() throws Exception {
+    msgCtxt.setVariable("imageData", loadImageBytes("Logs_512px.png.b64"));
+
+    // the length of the previous content, which no longer applies
+    msgCtxt.getMessage().setHeader("content-length", "999");
+
+    Properties props = new Properties();
+    props.put("contentVar", "imageData");
+    props.put("contentType", "image/png");
+    props.put("transform", "base64-decode");
+
+    ContentSetter callout = new ContentSetter(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertNull(msgCtxt.getVariable("cs_error"), "error");
+    // the decoded length is not known until the content is read
+    Assert.assertNull(msgCtxt.getVariable("cs_payload_length"), "payload_length");
+    Assert.assertNull(msgCtxt.getMessage().getHeader("content-length"), "content-length");
+    Assert.assertEquals(readContent(msgCtxt.getMessage()), loadImageBytes("Logs_512px.png"));
+  }
+
+  @Test
+  public void setContent_Base64Encode() throws Exception {
+    byte[] image = loadImageBytes("Logs_512px.png");
+    byte[] expected = loadImageBytes("Logs_512px.png.b64");
+    msgCtxt.setVariable("imageData", image);
+
+    Properties props = new Properties();
+    props.put("contentVar", "imageData");
+    props.put("transform", "base64-encode");
+
+    ContentSetter callout = new ContentSetter(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertEquals(
+        msgCtxt.getVariable("cs_payload_length"), Integer.valueOf(expected.length));
+    Assert.assertEquals(readContent(msgCtxt.getMessage()), expected);
+  }
+
+  @Test
+  public void setContent_Base64UrlRoundTrip() throws Exception {
+    // lengths that need 0, 1 and 2 padding characters, and one that spans several blocks
+    for (int length : new int[] {0, 1, 2, 3, 3 * 1024 + 1, 10000}) {
+      byte[] original = new byte[length];
+      new Random(length).nextBytes(original);
+      msgCtxt.setVariable("raw", original);
+
+      Properties props = new Properties();
+      props.put("contentVar", "raw");
+      props.put("transform", "base64url-encode");
+      new ContentSetter(props).execute(msgCtxt, exeCtxt);
+      byte[] encoded = readContent(msgCtxt.getMessage());
+      Assert.assertEquals(encoded, Base64.getUrlEncoder().encode(original), "length " + length);
+
+      msgCtxt.setVariable("encoded", encoded);
+      props.put("contentVar", "encoded");
+      props.put("transform", "base64url-decode");
+      new ContentSetter(props).execute(msgCtxt, exeCtxt);
+      Assert.assertEquals(readContent(msgCtxt.getMessage()), original, "length " + length);
+    }
+  }
+
+  @Test
+  public void setContent_UnsupportedTransform() throws Exception {
+    msgCtxt.setVariable("var1", "abc");
+    Properties props = new Properties();
+    props.put("contentVar", "var1");
+    props.put("transform", "rot13");
+
+    ContentSetter callout = new ContentSetter(props);
+    callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(msgCtxt.getVariable("cs_error"), "unsupported transform: rot13");
+  }
+
+  @Test
+  public void setContent_DebugCapturesStackTrace() throws Exception {
+    Properties props = new Properties();
+    props.put("contentVar", "no-such-variable");
+    props.put("debug", "true");
+
+    ContentSetter callout = new ContentSetter(props);
+    callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(msgCtxt.getVariable("cs_error_code"), "missing_content");
+    String stacktrace = (String) msgCtxt.getVariable("cs_stacktrace");
+    Assert.assertNotNull(stacktrace, "stacktrace");
+    Assert.assertTrue(stacktrace.contains("ContentSetter.variableContent"), stacktrace);
+  }
 }
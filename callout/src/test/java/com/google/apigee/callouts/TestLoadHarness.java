@@ -0,0 +1,240 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.callouts;
+
+import com.apigee.flow.execution.ExecutionContext;
+import com.apigee.flow.execution.ExecutionResult;
+import com.apigee.flow.message.Message;
+import com.apigee.flow.message.MessageContext;
+import com.google.apigee.multipartform.MultipartForm;
+import com.google.apigee.multipartform.Part;
+import java.io.ByteArrayInputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Drives one shared instance of each callout from several threads at once, as Apigee does, and
+ * checks every result. This catches state that leaks between concurrent executions, and the
+ * printed report (throughput, p50/p99 latency, GC time) shows contention on shared resources.
+ *
+ * <p>The defaults keep the run short. For a real load run, scale it up with system properties, eg
+ * <code>mvn test -Dtest=TestLoadHarness -Dloadtest.threads=32 -Dloadtest.iterations=2000</code>.
+ */
+public class TestLoadHarness {
+  private static final String testDataDir = "src/test/resources/test-data";
+  private static final int THREADS = Integer.getInteger("loadtest.threads", 4);
+  private static final int ITERATIONS = Integer.getInteger("loadtest.iterations", 25);
+  private static final String BOUNDARY = "--------------------LOADTEST0123456789";
+
+  private static class Payload {
+    final byte[] content;
+    final int itemCount;
+
+    Payload(List<Part> parts) {
+      MultipartForm form = new MultipartForm(BOUNDARY, parts);
+      this.content = InMemoryMessageContext.readAll(form.openStream());
+      this.itemCount = parts.size();
+    }
+  }
+
+  private byte[] image;
+  private List<Payload> payloads;
+
+  @BeforeClass
+  public void setup() throws Exception {
+    image = Files.readAllBytes(Paths.get(testDataDir, "Logs_512px.png"));
+    payloads = new ArrayList<Payload>();
+
+    // a few small text fields, as from an HTML form
+    List<Part> parts = new ArrayList<Part>();
+    for (String field : new String[] {"name", "email", "comment"}) {
+      parts.add(
+          new Part(field).withContentType("text/plain").withPartContent(text(field + "-value")));
+    }
+    payloads.add(new Payload(parts));
+
+    // one file upload with a description
+    parts = new ArrayList<Part>();
+    parts.add(new Part("description").withContentType("text/plain").withPartContent(text("logo")));
+    parts.add(
+        new Part("file")
+            .withContentType("image/png")
+            .withFileName("Logs_512px.png")
+            .withPartContent(image));
+    payloads.add(new Payload(parts));
+
+    // many small parts
+    parts = new ArrayList<Part>();
+    for (int i = 0; i < 40; i++) {
+      parts.add(
+          new Part("field" + i)
+              .withContentType("application/json")
+              .withPartContent(text("{\"i\":" + i + "}")));
+    }
+    payloads.add(new Payload(parts));
+  }
+
+  private static byte[] text(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private void parseOnce(MultipartFormParserV2 callout, ExecutionContext exeCtxt, Payload payload) {
+    MessageContext msgCtxt = InMemoryMessageContext.create();
+    Message message = msgCtxt.getMessage();
+    message.setContent(new ByteArrayInputStream(payload.content));
+    message.setHeader("content-type", "multipart/form-data; boundary=" + BOUNDARY);
+    ExecutionResult result = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+    Assert.assertEquals(result, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_itemcount"), Integer.toString(payload.itemCount));
+  }
+
+  private void createOnce(MultipartFormCreatorV2 callout, ExecutionContext exeCtxt) {
+    MessageContext msgCtxt = InMemoryMessageContext.create();
+    msgCtxt.setVariable("imageBytes", image);
+    msgCtxt.setVariable("note", "created under load");
+    ExecutionResult result = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+    Assert.assertEquals(result, ExecutionResult.SUCCESS, "ExecutionResult");
+    byte[] form = InMemoryMessageContext.readAll(msgCtxt.getMessage().getContentAsStream());
+    Assert.assertEquals(
+        (long) form.length, ((Number) msgCtxt.getVariable("mpf_payload_length")).longValue());
+  }
+
+  private static long gcMillis() {
+    long total = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      long t = gc.getCollectionTime();
+      if (t > 0) {
+        total += t;
+      }
+    }
+    return total;
+  }
+
+  private static int percentileIndex(int n, double p) {
+    return (int) Math.max(0, Math.min(n - 1, Math.ceil(n * p) - 1));
+  }
+
+  private static void report(String label, long[] latencies, long elapsedNanos) {
+    Arrays.sort(latencies);
+    System.out.printf(
+        "%-8s threads=%d ops=%d throughput=%.1f/s p50=%.3fms p99=%.3fms max=%.3fms\n",
+        label,
+        THREADS,
+        latencies.length,
+        latencies.length / (elapsedNanos / 1e9),
+        latencies[percentileIndex(latencies.length, 0.50)] / 1e6,
+        latencies[percentileIndex(latencies.length, 0.99)] / 1e6,
+        latencies[latencies.length - 1] / 1e6);
+  }
+
+  private long[] run(String label, Callable<Void> op) throws Exception {
+    // warm up, single threaded, so that class loading and JIT do not dominate the measurement
+    for (int i = 0; i < Math.max(1, ITERATIONS / 5); i++) {
+      op.call();
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+      for (int t = 0; t < THREADS; t++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  long[] latencies = new long[ITERATIONS];
+                  start.await();
+                  for (int i = 0; i < ITERATIONS; i++) {
+                    long t0 = System.nanoTime();
+                    op.call();
+                    latencies[i] = System.nanoTime() - t0;
+                  }
+                  return latencies;
+                }));
+      }
+      long gc0 = gcMillis();
+      long t0 = System.nanoTime();
+      start.countDown();
+      long[] all = new long[THREADS * ITERATIONS];
+      for (int t = 0; t < THREADS; t++) {
+        // rethrows any assertion failure from the worker
+        System.arraycopy(futures.get(t).get(), 0, all, t * ITERATIONS, ITERATIONS);
+      }
+      long elapsed = System.nanoTime() - t0;
+      report(label, all, elapsed);
+      System.out.printf("%-8s gc=%dms\n", label, gcMillis() - gc0);
+      return all;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void parse_SharedInstance() throws Exception {
+    Properties props = new Properties();
+    props.put("part-visitors", "sha256,bytes");
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    ExecutionContext exeCtxt = InMemoryMessageContext.newExecutionContext();
+    AtomicInteger next = new AtomicInteger();
+    run(
+        "parse",
+        () -> {
+          Payload payload = payloads.get((next.getAndIncrement() & 0x7fffffff) % payloads.size());
+          parseOnce(callout, exeCtxt, payload);
+          return null;
+        });
+  }
+
+  @Test
+  public void create_SharedInstance() throws Exception {
+    String descriptorJson =
+        "{\n"
+            + "  \"note\" : { \"content-var\" : \"note\", \"content-type\" : \"text/plain\" },\n"
+            + "  \"image\" : {\n"
+            + "    \"content-var\" : \"imageBytes\",\n"
+            + "    \"content-type\" : \"image/png\",\n"
+            + "    \"file-name\" : \"Logs_512px.png\"\n"
+            + "  }\n"
+            + "}\n";
+    Properties props = new Properties();
+    props.put("descriptor", descriptorJson);
+    MultipartFormCreatorV2 callout = new MultipartFormCreatorV2(props);
+    ExecutionContext exeCtxt = InMemoryMessageContext.newExecutionContext();
+    run(
+        "create",
+        () -> {
+          createOnce(callout, exeCtxt);
+          return null;
+        });
+  }
+}
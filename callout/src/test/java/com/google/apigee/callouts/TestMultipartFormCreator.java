@@ -18,17 +18,23 @@ package com.google.apigee.callouts;
 
 import com.apigee.flow.execution.ExecutionResult;
 import com.apigee.flow.message.Message;
+import com.google.apigee.multipartform.PartCache;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.Properties;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import mockit.Mock;
+import mockit.MockUp;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -135,4 +141,303 @@ public class TestMultipartFormCreator extends TestBase {
     copyInputStreamToFile(is, new File("./create_Json_MultipleParts.out"));
   }
 
+  @Test
+  public void create_Compressed_Gzip() throws Exception {
+    String descriptorJson =
+        "{\n"
+            + "  \"part1.json\" : {\n"
+            + "    \"content-var\" :  \"descriptor-json\",\n"
+            + "    \"content-type\" : \"application/json\",\n"
+            + "    \"want-b64-decode\": false\n"
+            + "  }\n"
+            + "}\n";
+    msgCtxt.setVariable("descriptor-json", descriptorJson);
+    // left by an earlier callout in the flow
+    msgCtxt.setVariable("mpf_payload_length", 1234L);
+
+    Properties props = new Properties();
+    props.put("descriptor", descriptorJson);
+    props.put("compress", "gzip");
+    props.put("compression-level", "9");
+
+    MultipartFormCreatorV2 callout = new MultipartFormCreatorV2(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+
+    Message msg = msgCtxt.getVariable("message");
+    Assert.assertEquals(msg.getHeader("content-encoding"), "gzip");
+    byte[] inflated;
+    try (InputStream is = new GZIPInputStream(msg.getContentAsStream())) {
+      inflated = CalloutBase.streamToByteArray(is);
+    }
+    Assert.assertNull(
+        msgCtxt.getVariable("mpf_payload_length"), "the compressed length is not known");
+    String form = new String(inflated, StandardCharsets.UTF_8);
+    Assert.assertTrue(form.contains("name=\"part1.json\""), "part name");
+    Assert.assertTrue(form.contains(descriptorJson), "part content");
+  }
+
+  private String createSinglePart(Properties props) throws Exception {
+    MultipartFormCreatorV2 callout = new MultipartFormCreatorV2(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+    Message msg = msgCtxt.getVariable("message");
+    byte[] form = CalloutBase.streamToByteArray(msg.getContentAsStream());
+    Assert.assertEquals(
+        (long) form.length, ((Number) msgCtxt.getVariable("mpf_payload_length")).longValue());
+    String boundary = (String) msgCtxt.getVariable("mpf_boundary");
+    return new String(form, StandardCharsets.ISO_8859_1).replace(boundary, "BOUNDARY");
+  }
+
+  @Test
+  public void create_SinglePart_Properties() throws Exception {
+    byte[] imageBytes = loadImageBytes("Logs_512px.png.b64");
+    msgCtxt.setVariable("base64EncodedImageData", new String(imageBytes, StandardCharsets.UTF_8));
+    msgCtxt.setVariable("the-name", "image");
+
+    Properties props = new Properties();
+    props.put("part-name", "image");
+    props.put("contentVar", "base64EncodedImageData");
+    props.put("contentType", "image/png");
+    props.put("fileName", "Logs_512px.png");
+    props.put("want-base64-decode", "true");
+    String fixed = createSinglePart(props);
+
+    // the same part, with a name resolved from a variable on each call
+    props.put("part-name", "{the-name}");
+    String resolved = createSinglePart(props);
+    Assert.assertEquals(resolved, fixed, "form content");
+
+    byte[] png = loadImageBytes("Logs_512px.png");
+    String expectedLeader =
+        "\r\n--BOUNDARY\r\n"
+            + "Content-Disposition: form-data; name=\"image\"; filename=\"Logs_512px.png\"\r\n"
+            + "Content-Type: image/png\r\n\r\n";
+    String expectedTrailer = "\r\n--BOUNDARY--\r\n";
+    Assert.assertEquals(
+        fixed,
+        expectedLeader + new String(png, StandardCharsets.ISO_8859_1) + expectedTrailer,
+        "form content");
+  }
+
+  @Test
+  public void create_MessageBackedPart() throws Exception {
+    final byte[] upstreamBytes = loadImageBytes("Logs_512px.png");
+    Message upstream =
+        new MockUp<Message>() {
+          @Mock()
+          public InputStream getContentAsStream() {
+            return new ByteArrayInputStream(upstreamBytes);
+          }
+
+          @Mock()
+          public String getHeader(final String name) {
+            return name.equals("content-length") ? upstreamBytes.length + "" : null;
+          }
+        }.getMockInstance();
+    msgCtxt.setVariable("upstream", upstream);
+    msgCtxt.setVariable("text", "hello");
+
+    String descriptorJson =
+        "{\n"
+            + "  \"greeting\" : {\n"
+            + "    \"content-var\" :  \"text\",\n"
+            + "    \"content-type\" : \"text/plain\"\n"
+            + "  },\n"
+            + "  \"relayed\" : {\n"
+            + "    \"content-message\" :  \"upstream\",\n"
+            + "    \"content-type\" : \"image/png\",\n"
+            + "    \"file-name\": \"Logs_512px.png\"\n"
+            + "  }\n"
+            + "}\n";
+
+    Properties props = new Properties();
+    props.put("descriptor", descriptorJson);
+
+    MultipartFormCreatorV2 callout = new MultipartFormCreatorV2(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+
+    Message msg = msgCtxt.getVariable("message");
+    byte[] form = CalloutBase.streamToByteArray(msg.getContentAsStream());
+    Assert.assertEquals(
+        (long) form.length, ((Number) msgCtxt.getVariable("mpf_payload_length")).longValue());
+    String content = new String(form, StandardCharsets.ISO_8859_1);
+    Assert.assertTrue(
+        content.contains(new String(upstreamBytes, StandardCharsets.ISO_8859_1)), "relayed");
+    Assert.assertTrue(content.contains("name=\"relayed\"; filename=\"Logs_512px.png\""));
+  }
+
+  @Test
+  public void create_CachedParts() throws Exception {
+    PartCache.shared().clear();
+    byte[] imageBytes = loadImageBytes("Logs_512px.png");
+    String descriptorJson =
+        "{\n"
+            + "  \"logo\" : {\n"
+            + "    \"content-resource\" : \"test-data/Logs_512px.png\",\n"
+            + "    \"content-type\" : \"image/png\",\n"
+            + "    \"file-name\": \"Logs_512px.png\"\n"
+            + "  },\n"
+            + "  \"terms\" : {\n"
+            + "    \"content-var\" : \"terms\",\n"
+            + "    \"content-type\" : \"text/plain\",\n"
+            + "    \"cacheable\" : true\n"
+            + "  }\n"
+            + "}\n";
+    Properties props = new Properties();
+    props.put("descriptor", descriptorJson);
+    MultipartFormCreatorV2 callout = new MultipartFormCreatorV2(props);
+
+    String[] forms = new String[2];
+    for (int i = 0; i < forms.length; i++) {
+      // a cacheable variable is read only on the first call
+      msgCtxt.setVariable("terms", (i == 0) ? "the terms" : "changed terms");
+      ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+      Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+      Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+      Message msg = msgCtxt.getVariable("message");
+      byte[] form = CalloutBase.streamToByteArray(msg.getContentAsStream());
+      Assert.assertEquals(
+          (long) form.length, ((Number) msgCtxt.getVariable("mpf_payload_length")).longValue());
+      forms[i] = new String(form, StandardCharsets.ISO_8859_1);
+    }
+    Assert.assertEquals(PartCache.shared().misses(), 2L, "misses");
+    Assert.assertEquals(PartCache.shared().hits(), 2L, "hits");
+    for (String content : forms) {
+      Assert.assertTrue(
+          content.contains(new String(imageBytes, StandardCharsets.ISO_8859_1)), "resource");
+      Assert.assertTrue(content.contains("name=\"logo\"; filename=\"Logs_512px.png\""));
+      Assert.assertTrue(content.contains("\r\n\r\nthe terms\r\n"), "cached variable");
+    }
+  }
+
+  @Test
+  public void create_CachedParts_ScopedByProxy() throws Exception {
+    PartCache.shared().clear();
+    String descriptorJson =
+        "{\n"
+            + "  \"terms\" : {\n"
+            + "    \"content-var\" : \"terms\",\n"
+            + "    \"content-type\" : \"text/plain\",\n"
+            + "    \"cacheable\" : true\n"
+            + "  }\n"
+            + "}\n";
+    Properties props = new Properties();
+    props.put("descriptor", descriptorJson);
+    MultipartFormCreatorV2 callout = new MultipartFormCreatorV2(props);
+    long misses = PartCache.shared().misses();
+
+    // two proxies in two organizations use the same variable name for their own content
+    String[][] proxies = {{"org1", "proxy-a", "terms of a"}, {"org2", "proxy-b", "terms of b"}};
+    for (String[] proxy : proxies) {
+      msgCtxt.setVariable("organization.name", proxy[0]);
+      msgCtxt.setVariable("apiproxy.name", proxy[1]);
+      msgCtxt.setVariable("terms", proxy[2]);
+      callout.execute(msgCtxt, exeCtxt);
+      Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+      Message msg = msgCtxt.getVariable("message");
+      String form =
+          new String(
+              CalloutBase.streamToByteArray(msg.getContentAsStream()), StandardCharsets.UTF_8);
+      Assert.assertTrue(form.contains("\r\n\r\n" + proxy[2] + "\r\n"), proxy[1]);
+    }
+    Assert.assertEquals(PartCache.shared().misses() - misses, 2L, "misses");
+  }
+
+  private void createFromFile(String resource, String baseDir) throws Exception {
+    String descriptorJson =
+        "{\n  \"logo\" : { \"content-resource\" : \"" + resource + "\",\n"
+            + "    \"content-type\" : \"image/png\", \"cacheable\" : false }\n}\n";
+    Properties props = new Properties();
+    props.put("descriptor", descriptorJson);
+    if (baseDir != null) {
+      props.put("resource-base-dir", baseDir);
+    }
+    new MultipartFormCreatorV2(props).execute(msgCtxt, exeCtxt);
+  }
+
+  @Test
+  public void create_FileResource() throws Exception {
+    createFromFile("file:Logs_512px.png", testDataDir);
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+    Message msg = msgCtxt.getVariable("message");
+    byte[] form = CalloutBase.streamToByteArray(msg.getContentAsStream());
+    Assert.assertTrue(
+        new String(form, StandardCharsets.ISO_8859_1)
+            .contains(new String(loadImageBytes("Logs_512px.png"), StandardCharsets.ISO_8859_1)),
+        "content");
+  }
+
+  @Test
+  public void create_FileResource_OutsideBaseDir() throws Exception {
+    createFromFile("file:../../../../pom.xml", testDataDir);
+    Assert.assertEquals(msgCtxt.getVariable("mpf_error_code"), "invalid_descriptor");
+    Assert.assertEquals(
+        msgCtxt.getVariable("mpf_error"),
+        "part logo: resource file:../../../../pom.xml is outside resource-base-dir");
+
+    createFromFile("file:" + Paths.get("pom.xml").toAbsolutePath(), testDataDir);
+    Assert.assertEquals(msgCtxt.getVariable("mpf_error_code"), "invalid_descriptor", "absolute");
+  }
+
+  @Test
+  public void create_FileResource_NoBaseDir() throws Exception {
+    createFromFile("file:" + testDataDir + "/Logs_512px.png", null);
+    Assert.assertEquals(msgCtxt.getVariable("mpf_error_code"), "invalid_configuration");
+    Assert.assertEquals(
+        msgCtxt.getVariable("mpf_error"),
+        "part logo: a file: resource requires resource-base-dir");
+  }
+
+  @Test
+  public void create_ResourceNotFound() throws Exception {
+    String descriptorJson =
+        "{\n  \"x\" : { \"content-resource\" : \"no/such/resource\" }\n}\n";
+    Properties props = new Properties();
+    props.put("descriptor", descriptorJson);
+    MultipartFormCreatorV2 callout = new MultipartFormCreatorV2(props);
+    callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(
+        msgCtxt.getVariable("mpf_error"), "part x: resource no/such/resource not found");
+  }
+
+  @Test
+  public void create_FromFormIndex() throws Exception {
+    byte[] payload = loadImageBytes("MultiPart-payload.out");
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(payload));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+    Properties parserProps = new Properties();
+    parserProps.put("mode", "index");
+    new MultipartFormParserV2(parserProps).execute(msgCtxt, exeCtxt);
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+
+    String descriptorJson =
+        "{\n"
+            + "  \"forwarded.png\" : {\n"
+            + "    \"content-var\" :  \"part:part2.png\",\n"
+            + "    \"content-type\" : \"image/png\",\n"
+            + "    \"file-name\": \"Logs_512px.png\"\n"
+            + "  }\n"
+            + "}\n";
+    Properties props = new Properties();
+    props.put("descriptor", descriptorJson);
+    ExecutionResult actualResult = new MultipartFormCreatorV2(props).execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+
+    byte[] form = CalloutBase.streamToByteArray(msg.getContentAsStream());
+    Assert.assertEquals(
+        (long) form.length, ((Number) msgCtxt.getVariable("mpf_payload_length")).longValue());
+    String content = new String(form, StandardCharsets.ISO_8859_1);
+    byte[] imageBytes = loadImageBytes("Logs_512px.png");
+    Assert.assertTrue(
+        content.contains(new String(imageBytes, StandardCharsets.ISO_8859_1)), "forwarded");
+    Assert.assertTrue(content.contains("name=\"forwarded.png\"; filename=\"Logs_512px.png\""));
+  }
 }
@@ -18,11 +18,19 @@ package com.google.apigee.callouts;
 
 import com.apigee.flow.execution.ExecutionResult;
 import com.apigee.flow.message.Message;
+import com.google.apigee.multipartform.FormIndex;
+import com.google.apigee.multipartform.MemoryBudget;
+import com.google.apigee.multipartform.PartContent;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -157,4 +165,530 @@ public class TestMultipartFormParser extends TestBase {
     Assert.assertTrue(ctype2 instanceof String);
     Assert.assertEquals(ctype2, "image/png");
   }
+
+  private static String hexDigest(String algorithm, byte[] data) throws Exception {
+    StringBuilder sb = new StringBuilder();
+    for (byte b : MessageDigest.getInstance(algorithm).digest(data)) {
+      sb.append(String.format("%02x", b));
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void parse_WithPartVisitors() throws Exception {
+    Message msg = msgCtxt.getMessage();
+    byte[] payloadBytes = loadImageBytes("MultiPart-payload.2.out");
+    msg.setContent(new ByteArrayInputStream(payloadBytes));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+
+    Properties props = new Properties();
+    props.put("source", "message");
+    props.put("part-visitors", "sha256, md5, crc32c, bytes");
+
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+
+    byte[] content2 = (byte[]) msgCtxt.getVariable("mpf_item_content_2");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_sha256_2"), hexDigest("SHA-256", content2));
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_md5_2"), hexDigest("MD5", content2));
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_bytes_2"), content2.length + "");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_bytes_1"), "15");
+    // computed independently, with java.util.zip.CRC32C
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_crc32c_1"), "335b0538", "crc32c");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_crc32c_2"), "1d9626fd", "crc32c");
+  }
+
+  @Test
+  public void parse_WithPartVisitors_IndexMode() throws Exception {
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(loadImageBytes("MultiPart-payload.2.out")));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+
+    Properties props = new Properties();
+    props.put("mode", "index");
+    props.put("part-visitors", "crc32c, bytes");
+
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+    // the same values as when the parts are streamed
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_crc32c_1"), "335b0538", "crc32c");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_crc32c_2"), "1d9626fd", "crc32c");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_bytes_1"), "15");
+  }
+
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (GZIPOutputStream gz = new GZIPOutputStream(baos)) {
+      gz.write(data);
+    }
+    return baos.toByteArray();
+  }
+
+  @Test
+  public void parse_GzipEncoded() throws Exception {
+    Message msg = msgCtxt.getMessage();
+    byte[] payloadBytes = loadImageBytes("MultiPart-payload.2.out");
+    msg.setContent(new ByteArrayInputStream(gzip(payloadBytes)));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+    msg.setHeader("content-encoding", "gzip");
+
+    Properties props = new Properties();
+    props.put("source", "message");
+
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_itemcount"), "2");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_content_1_string"), "value-goes-here");
+  }
+
+  @Test
+  public void parse_GzipEncoded_RatioExceeded() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    sb.append("--b\r\nContent-Disposition: form-data; name=\"zeros\"\r\n\r\n");
+    sb.append(new String(new char[1024 * 1024]).replace('\0', '0'));
+    sb.append("\r\n--b--\r\n");
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(gzip(sb.toString().getBytes(StandardCharsets.UTF_8))));
+    msg.setHeader("content-type", "multipart/form-data; boundary=b");
+    msg.setHeader("content-encoding", "gzip");
+
+    Properties props = new Properties();
+    props.put("max-decompression-ratio", "20");
+
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_error"), "decompression ratio exceeds limit (20)");
+  }
+
+  @Test
+  public void parse_DirectContentStore() throws Exception {
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(loadImageBytes("MultiPart-payload.out")));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+
+    Properties props = new Properties();
+    props.put("content-store", "direct");
+    props.put("content-store-threshold", "1024");
+
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+
+    // the small text part stays on the heap; the image goes to the store
+    Assert.assertTrue(msgCtxt.getVariable("mpf_item_content_1") instanceof byte[], "part 1");
+    Object content2 = msgCtxt.getVariable("mpf_item_content_2");
+    Assert.assertTrue(content2 instanceof PartContent, "part 2");
+    byte[] imageBytes = loadImageBytes("Logs_512px.png");
+    Assert.assertEquals(((PartContent) content2).toByteArray(), imageBytes);
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_size_2"), imageBytes.length + "");
+
+    ContentReleaser releaser = new ContentReleaser(new Properties());
+    releaser.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(msgCtxt.getVariable("cr_released"), "true");
+    Assert.assertNull(msgCtxt.getVariable("mpf_content_store"), "content_store");
+    try {
+      ((PartContent) content2).openStream();
+      Assert.fail("expected exception");
+    } catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void parse_MetadataMode() throws Exception {
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(loadImageBytes("MultiPart-payload.out")));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+
+    Properties props = new Properties();
+    props.put("mode", "metadata");
+    props.put("part-visitors", "bytes");
+
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_itemcount"), "2");
+
+    byte[] imageBytes = loadImageBytes("Logs_512px.png");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_content-type_2"), "image/png");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_size_2"), imageBytes.length + "");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_bytes_2"), imageBytes.length + "");
+    Assert.assertNotNull(msgCtxt.getVariable("mpf_item_filename_2"), "filename");
+    // no content is retained
+    Assert.assertNull(msgCtxt.getVariable("mpf_item_content_1"), "content 1");
+    Assert.assertNull(msgCtxt.getVariable("mpf_item_content_1_string"), "content 1 string");
+    Assert.assertNull(msgCtxt.getVariable("mpf_item_content_2"), "content 2");
+  }
+
+  // Reserves all that is left of the shared budget, as concurrent uploads would.
+  private static long exhaustBudget() {
+    MemoryBudget budget = MemoryBudget.shared();
+    long rest = budget.maxBytes() - budget.reservedBytes();
+    Assert.assertTrue(budget.tryReserve(rest), "reserve");
+    return rest;
+  }
+
+  @Test
+  public void parse_BudgetExhausted() throws Exception {
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(loadImageBytes("MultiPart-payload.out")));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+
+    Properties props = new Properties();
+    props.put("budget-wait-ms", "20");
+    long held = exhaustBudget();
+    try {
+      MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+      ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+      Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+      String error = (String) msgCtxt.getVariable("mpf_error");
+      Assert.assertNotNull(error, "error");
+      Assert.assertTrue(error.startsWith("memory budget exhausted"), error);
+      Assert.assertNull(msgCtxt.getVariable("mpf_itemcount"), "itemcount");
+    } finally {
+      MemoryBudget.shared().release(held);
+    }
+    Assert.assertEquals(MemoryBudget.shared().reservedBytes(), 0L, "released");
+  }
+
+  @Test
+  public void parse_KeepsBudgetUntilReleased() throws Exception {
+    byte[] payload = loadImageBytes("MultiPart-payload.out");
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(payload));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+    msg.setHeader("content-length", Integer.toString(payload.length));
+
+    long before = MemoryBudget.shared().reservedBytes();
+    MultipartFormParserV2 callout = new MultipartFormParserV2(new Properties());
+    callout.execute(msgCtxt, exeCtxt);
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+    MemoryBudget.Lease lease = (MemoryBudget.Lease) msgCtxt.getVariable("mpf_memory_lease");
+    Assert.assertTrue(lease.heldBytes() >= payload.length, "lease");
+    Assert.assertEquals(
+        MemoryBudget.shared().reservedBytes(), before + lease.heldBytes(), "held by the flow");
+
+    ContentReleaser releaser = new ContentReleaser(new Properties());
+    releaser.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(msgCtxt.getVariable("cr_released"), "true");
+    Assert.assertNull(msgCtxt.getVariable("mpf_memory_lease"), "lease variable");
+    Assert.assertEquals(MemoryBudget.shared().reservedBytes(), before, "released");
+  }
+
+  @Test
+  public void parse_KeepsBudgetInLeaseVariable() throws Exception {
+    byte[] payload = loadImageBytes("MultiPart-payload.out");
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(payload));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+    msg.setHeader("content-length", Integer.toString(payload.length));
+
+    long before = MemoryBudget.shared().reservedBytes();
+    Properties props = new Properties();
+    props.setProperty("lease-variable", "flow_lease");
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    callout.execute(msgCtxt, exeCtxt);
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+    Assert.assertNull(msgCtxt.getVariable("mpf_memory_lease"), "default lease variable");
+    MemoryBudget.Lease lease = (MemoryBudget.Lease) msgCtxt.getVariable("flow_lease");
+    Assert.assertTrue(lease.heldBytes() >= payload.length, "lease");
+
+    ContentReleaser releaser = new ContentReleaser(props);
+    releaser.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(msgCtxt.getVariable("cr_released"), "true");
+    Assert.assertNull(msgCtxt.getVariable("flow_lease"), "lease variable");
+    Assert.assertEquals(MemoryBudget.shared().reservedBytes(), before, "released");
+  }
+
+  @Test
+  public void parse_BudgetExhausted_MetadataFallback() throws Exception {
+    byte[] payload = loadImageBytes("MultiPart-payload.out");
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(payload));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+    msg.setHeader("content-length", Integer.toString(payload.length));
+
+    Properties props = new Properties();
+    props.put("on-budget-exhausted", "metadata");
+    long held = exhaustBudget();
+    try {
+      MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+      callout.execute(msgCtxt, exeCtxt);
+      Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+      Assert.assertEquals(msgCtxt.getVariable("mpf_budget_fallback"), "metadata");
+      Assert.assertEquals(msgCtxt.getVariable("mpf_itemcount"), "2");
+      Assert.assertNotNull(msgCtxt.getVariable("mpf_item_size_2"), "size");
+      Assert.assertNull(msgCtxt.getVariable("mpf_item_content_2"), "content");
+    } finally {
+      MemoryBudget.shared().release(held);
+    }
+  }
+
+  // Delivers the content in small pieces, with a pause before each, like a slow client.
+  private static class SlowInputStream extends FilterInputStream {
+    SlowInputStream(byte[] content) {
+      super(new ByteArrayInputStream(content));
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      try {
+        Thread.sleep(5);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return super.read(b, off, Math.min(len, 512));
+    }
+  }
+
+  @Test
+  public void parse_DeadlineExceeded() throws Exception {
+    byte[] payload = loadImageBytes("MultiPart-payload.out");
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new SlowInputStream(payload));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+
+    Properties props = new Properties();
+    props.put("deadline-ms", "50");
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    long start = System.nanoTime();
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    long elapsedMillis = (System.nanoTime() - start) / 1000000;
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    String error = (String) msgCtxt.getVariable("mpf_error");
+    Assert.assertNotNull(error, "error");
+    Assert.assertTrue(error.startsWith("deadline of 50 ms exceeded"), error);
+    Assert.assertEquals(msgCtxt.getVariable("mpf_deadline_exceeded"), "true");
+    long bytesRead = Long.parseLong((String) msgCtxt.getVariable("mpf_bytes_read"));
+    Assert.assertTrue(bytesRead > 0 && bytesRead < payload.length, "bytes read: " + bytesRead);
+    Assert.assertNotNull(msgCtxt.getVariable("mpf_items_completed"), "items completed");
+    Assert.assertTrue(elapsedMillis < 1000, "stopped promptly: " + elapsedMillis);
+  }
+
+  @Test
+  public void parse_WithinDeadline() throws Exception {
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(loadImageBytes("MultiPart-payload.out")));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+
+    Properties props = new Properties();
+    props.put("deadline-ms", "60000");
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    callout.execute(msgCtxt, exeCtxt);
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_itemcount"), "2");
+    Assert.assertNull(msgCtxt.getVariable("mpf_deadline_exceeded"), "deadline exceeded");
+  }
+
+  @Test
+  public void parse_UrlEncoded() throws Exception {
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(
+        new ByteArrayInputStream(
+            "greeting=hello+world&expr=a%3Db%26c&flag".getBytes(StandardCharsets.UTF_8)));
+    msg.setHeader("content-type", "application/x-www-form-urlencoded; charset=UTF-8");
+
+    Properties props = new Properties();
+    props.put("part-visitors", "bytes");
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_itemcount"), "3");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_items"), "greeting, expr, flag");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_filename_1"), "greeting");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_content_1_string"), "hello world");
+    Assert.assertEquals(
+        (byte[]) msgCtxt.getVariable("mpf_item_content_2"),
+        "a=b&c".getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_content-type_2"), "text/plain");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_size_2"), "5");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_bytes_2"), "5");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_content_3_string"), "");
+  }
+
+  @Test
+  public void parse_UrlEncoded_MetadataMode() throws Exception {
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream("a=1&b=22".getBytes(StandardCharsets.UTF_8)));
+    msg.setHeader("content-type", "application/x-www-form-urlencoded");
+
+    Properties props = new Properties();
+    props.put("mode", "metadata");
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    callout.execute(msgCtxt, exeCtxt);
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_itemcount"), "2");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_size_2"), "2");
+    Assert.assertNull(msgCtxt.getVariable("mpf_item_content_2"), "content");
+  }
+
+  @Test
+  public void parse_UrlEncoded_BudgetCoversValueAsItGrows() throws Exception {
+    // no content-length, so nothing is reserved up front
+    byte[] form = ("big=" + new String(new char[200000]).replace('\0', 'v')).getBytes();
+    Message msg = msgCtxt.getMessage();
+    msg.setHeader("content-type", "application/x-www-form-urlencoded");
+    long held = exhaustBudget();
+    try {
+      Properties props = new Properties();
+      props.put("on-budget-exhausted", "reject");
+      msg.setContent(new ByteArrayInputStream(form));
+      new MultipartFormParserV2(props).execute(msgCtxt, exeCtxt);
+      Assert.assertEquals(msgCtxt.getVariable("mpf_error_code"), "budget_exhausted");
+      Assert.assertNull(msgCtxt.getVariable("mpf_item_content_1"), "content");
+
+      // in metadata mode, the value streams to the visitors and is not buffered
+      msgCtxt.removeVariable("mpf_error");
+      props.put("mode", "metadata");
+      props.put("part-visitors", "bytes");
+      msg.setContent(new ByteArrayInputStream(form));
+      new MultipartFormParserV2(props).execute(msgCtxt, exeCtxt);
+      Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+      Assert.assertEquals(msgCtxt.getVariable("mpf_item_size_1"), "200000");
+      Assert.assertEquals(msgCtxt.getVariable("mpf_item_bytes_1"), "200000");
+      Assert.assertNull(msgCtxt.getVariable("mpf_item_content_1"), "content");
+    } finally {
+      MemoryBudget.shared().release(held);
+    }
+  }
+
+  @Test
+  public void parse_UrlEncoded_InvalidEscape() throws Exception {
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream("a=%G1".getBytes(StandardCharsets.UTF_8)));
+    msg.setHeader("content-type", "application/x-www-form-urlencoded");
+
+    MultipartFormParserV2 callout = new MultipartFormParserV2(new Properties());
+    callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(
+        msgCtxt.getVariable("mpf_error"), "invalid percent-escape in form content");
+  }
+
+  @Test
+  public void warmUp_RoundTrip() throws Exception {
+    // two parts parsed, two indexed, three fields
+    Assert.assertEquals(WarmUp.roundTrip(), 7);
+
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(loadImageBytes("MultiPart-payload.out")));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+    Properties props = new Properties();
+    props.put("warm-up", "true");
+    props.put("warm-up-iterations", "50");
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    callout.execute(msgCtxt, exeCtxt);
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_itemcount"), "2");
+  }
+
+  @Test
+  public void parse_UnsupportedMode() throws Exception {
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(loadImageBytes("MultiPart-payload.out")));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+    Properties props = new Properties();
+    props.put("mode", "headers");
+
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(msgCtxt.getVariable("mpf_error"), "unsupported mode: headers");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_error_code"), "invalid_configuration");
+    Assert.assertNull(msgCtxt.getVariable("mpf_stacktrace"), "stacktrace");
+  }
+
+  @Test
+  public void parse_UnsupportedMode_Debug() throws Exception {
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(loadImageBytes("MultiPart-payload.out")));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+    Properties props = new Properties();
+    props.put("mode", "headers");
+    props.put("debug", "true");
+
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(msgCtxt.getVariable("mpf_error_code"), "invalid_configuration");
+    String stacktrace = (String) msgCtxt.getVariable("mpf_stacktrace");
+    Assert.assertNotNull(stacktrace, "stacktrace");
+    Assert.assertTrue(stacktrace.contains("getMode"), stacktrace);
+  }
+
+  @Test
+  public void parse_MissingContentType() throws Exception {
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(loadImageBytes("MultiPart-payload.out")));
+
+    MultipartFormParserV2 callout = new MultipartFormParserV2(new Properties());
+    callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(msgCtxt.getVariable("mpf_error"), "missing content-type header");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_error_code"), "missing_content_type");
+  }
+
+  @Test
+  public void parse_IndexMode_ForwardPart() throws Exception {
+    byte[] payload = loadImageBytes("MultiPart-payload.out");
+    Message msg = msgCtxt.getMessage();
+    msg.setContent(new ByteArrayInputStream(payload));
+    msg.setHeader(
+        "content-type", "multipart/form-data; boundary=----------------------QCN1DGMIPH8GPY");
+    msg.setHeader("content-length", payload.length + "");
+
+    Properties props = new Properties();
+    props.put("mode", "index");
+    props.put("part-visitors", "bytes");
+
+    MultipartFormParserV2 callout = new MultipartFormParserV2(props);
+    ExecutionResult actualResult = callout.execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(actualResult, ExecutionResult.SUCCESS, "ExecutionResult");
+    Assert.assertNull(msgCtxt.getVariable("mpf_error"), "error");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_itemcount"), "2");
+    Assert.assertTrue(msgCtxt.getVariable("mpf_form_index") instanceof FormIndex, "form index");
+
+    byte[] imageBytes = loadImageBytes("Logs_512px.png");
+    Object content2 = msgCtxt.getVariable("mpf_item_content_2");
+    Assert.assertTrue(content2 instanceof PartContent, "part 2");
+    Assert.assertEquals(((PartContent) content2).toByteArray(), imageBytes);
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_content-type_2"), "image/png");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_size_2"), imageBytes.length + "");
+    Assert.assertEquals(msgCtxt.getVariable("mpf_item_bytes_2"), imageBytes.length + "");
+
+    // forward one part as the content of the message, straight from the index
+    Properties setterProps = new Properties();
+    setterProps.put("contentVar", "part:part2.png");
+    setterProps.put("contentType", "image/png");
+    ContentSetter setter = new ContentSetter(setterProps);
+    setter.execute(msgCtxt, exeCtxt);
+    Assert.assertNull(msgCtxt.getVariable("cs_error"), "error");
+    Assert.assertEquals(msg.getHeader("content-length"), imageBytes.length + "");
+    Assert.assertEquals(CalloutBase.streamToByteArray(msg.getContentAsStream()), imageBytes);
+
+    setterProps.put("contentVar", "part:nonexistent");
+    new ContentSetter(setterProps).execute(msgCtxt, exeCtxt);
+    Assert.assertEquals(
+        msgCtxt.getVariable("cs_error"),
+        "part:nonexistent cannot be resolved: the form has no such part");
+  }
 }
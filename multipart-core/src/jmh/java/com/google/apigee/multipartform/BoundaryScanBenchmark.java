@@ -0,0 +1,135 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the boundary search on one corpus of forms: scanning a body for the first delimiter
+ * byte, with the portable loop and with whichever ByteScanner the running JDK selects from the
+ * multi-release jar, and a full parse. Run the same jar on Java 8 or 17 and on Java 21 to compare:
+ *
+ * <pre>
+ * mvn -pl multipart-core -Pjmh -DskipTests package exec:exec -Djmh.args=BoundaryScanBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BoundaryScanBenchmark {
+  private static final String BOUNDARY = "----BoundaryScanBenchmark7MA4YWxkTrZu0gW";
+
+  /** text has no CR in the body; binary is uniformly random, so a CR every 256 bytes. */
+  @Param({"text", "binary"})
+  public String content;
+
+  @Param({"65536", "1048576"})
+  public int size;
+
+  private byte[] body;
+  private byte[] form;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(7);
+    body = new byte[size];
+    if (content.equals("text")) {
+      for (int i = 0; i < size; i++) {
+        body[i] = (byte) (' ' + random.nextInt(95));
+      }
+    } else {
+      random.nextBytes(body);
+    }
+    byte[] head =
+        ("--"
+                + BOUNDARY
+                + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"data.bin\""
+                + "\r\nContent-Type: application/octet-stream\r\n\r\n")
+            .getBytes(StandardCharsets.UTF_8);
+    byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8);
+    form = new byte[head.length + body.length + tail.length];
+    System.arraycopy(head, 0, form, 0, head.length);
+    System.arraycopy(body, 0, form, head.length, body.length);
+    System.arraycopy(tail, 0, form, head.length + body.length, tail.length);
+  }
+
+  @Benchmark
+  public int scanLoop() {
+    int count = 0;
+    for (int i = 0; i < body.length; i++) {
+      while (i < body.length && body[i] != '\r') {
+        i++;
+      }
+      if (i < body.length) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int scanByteScanner() {
+    int count = 0;
+    for (int i = 0; i < body.length; i++) {
+      i = ByteScanner.indexOf(body, i, body.length, (byte) '\r');
+      if (i < body.length) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public void parse(Blackhole blackhole) {
+    MultipartParser parser =
+        new MultipartParser(
+            BOUNDARY,
+            new PartListener() {
+              public void onPartStart() {}
+
+              public void onHeader(String name, String value) {}
+
+              public void onBodyChunk(ByteBuffer chunk) {
+                blackhole.consume(chunk.remaining());
+              }
+
+              public void onPartEnd() {}
+            });
+    for (int offset = 0; offset < form.length; offset += 8192) {
+      parser.feed(form, offset, Math.min(8192, form.length - offset));
+    }
+    parser.finish();
+  }
+}
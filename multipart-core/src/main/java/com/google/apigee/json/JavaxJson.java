@@ -2,35 +2,85 @@
 
 package com.google.apigee.json;
 
+import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.io.OutputStream;
 import java.io.StringReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonNumber;
 import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
 import javax.json.JsonString;
 import javax.json.JsonValue;
 import javax.json.JsonValue.ValueType;
+import javax.json.spi.JsonProvider;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
 
 public class JavaxJson {
+  // Resolving the JsonProvider involves a ServiceLoader lookup; do it once, not on every call.
+  private static final JsonProvider provider = JsonProvider.provider();
+  private static final JsonReaderFactory readerFactory = provider.createReaderFactory(null);
+  private static final JsonParserFactory parserFactory = provider.createParserFactory(null);
+  private static final JsonGeneratorFactory generatorFactory =
+      provider.createGeneratorFactory(null);
+
+  private static final ClassValue<BeanBinding> bindings =
+      new ClassValue<BeanBinding>() {
+        @Override
+        protected BeanBinding computeValue(Class<?> type) {
+          return BeanBinding.of(type);
+        }
+      };
+
+  // SimpleDateFormat is not thread safe; keep one per thread rather than one per value.
+  private static final ThreadLocal<SimpleDateFormat> dateFormat =
+      ThreadLocal.withInitial(
+          () ->
+              // This is default Gson format. Alter if necessary.
+              new SimpleDateFormat("MMM dd, yyyy H:mm:ss a", Locale.ENGLISH));
+
   @SuppressWarnings("unchecked")
   public static <T> T fromJson(String json, Class<T> beanClass) {
-    JsonValue value = Json.createReader(new StringReader(json)).read();
+    JsonValue value;
+    try (JsonReader reader = readerFactory.createReader(new StringReader(json))) {
+      value = reader.read();
+    }
     return (T) decode(value, beanClass);
   }
 
+  /** Returns a streaming parser over the given JSON, from the cached parser factory. */
+  public static JsonParser createParser(String json) {
+    return parserFactory.createParser(new StringReader(json));
+  }
+
+  /** Returns a streaming generator that writes UTF-8 JSON to out, from the cached factory. */
+  public static JsonGenerator createGenerator(OutputStream out) {
+    return generatorFactory.createGenerator(out, StandardCharsets.UTF_8);
+  }
+
   private static Object decode(JsonValue jsonValue, Type targetType) {
     if (jsonValue.getValueType() == ValueType.NULL) {
       return null;
@@ -82,7 +132,7 @@ public class JavaxJson {
       return jsonNumber.intValue();
     } else if (targetType == long.class || targetType == Long.class) {
       return jsonNumber.longValue();
-    } else if (targetType == long.class || targetType == Double.class) {
+    } else if (targetType == double.class || targetType == Double.class) {
       return jsonNumber.doubleValue();
     } else {
       throw new UnsupportedOperationException("Unsupported number type: " + targetType);
@@ -94,8 +144,7 @@ public class JavaxJson {
       return jsonString.getString();
     } else if (targetType == Date.class) {
       try {
-        return new SimpleDateFormat("MMM dd, yyyy H:mm:ss a", Locale.ENGLISH)
-            .parse(jsonString.getString()); // This is default Gson format. Alter if necessary.
+        return dateFormat.get().parse(jsonString.getString());
       } catch (ParseException e) {
         throw new UnsupportedOperationException(
             "Unsupported date format: " + jsonString.getString());
@@ -165,26 +214,95 @@ public class JavaxJson {
         }
       }
       return map;
-    } else
+    } else {
+      BeanBinding binding = bindings.get(targetClass);
       try {
-        Object bean = targetClass.newInstance();
-
-        for (PropertyDescriptor property :
-            Introspector.getBeanInfo(targetClass).getPropertyDescriptors()) {
-          if (property.getWriteMethod() != null && object.containsKey(property.getName())) {
-            property
-                .getWriteMethod()
-                .invoke(
-                    bean,
-                    decode(
-                        object.get(property.getName()),
-                        property.getWriteMethod().getGenericParameterTypes()[0]));
+        Object bean = binding.newInstance();
+        for (Map.Entry<String, JsonValue> entry : object.entrySet()) {
+          BeanBinding.Setter setter = binding.setters.get(entry.getKey());
+          if (setter != null) {
+            setter.set(bean, decode(entry.getValue(), setter.type));
           }
         }
-
         return bean;
-      } catch (Exception e) {
+      } catch (UnsupportedOperationException e) {
+        throw e;
+      } catch (Throwable e) {
         throw new UnsupportedOperationException("Unsupported object type: " + targetClass, e);
       }
+    }
+  }
+
+  /**
+   * The plan for populating one bean class: a constructor handle, and a setter handle for each
+   * writable property. Built once per class, on first use, and cached in a ClassValue, so decoding
+   * does no introspection and no reflective invoke per object. Only public members are bound;
+   * access checks are never suppressed.
+   */
+  private static final class BeanBinding {
+    private final Class<?> type;
+    private final MethodHandle constructor; // ()Object, or null if there is none
+    final Map<String, Setter> setters;
+
+    static final class Setter {
+      final MethodHandle handle; // (Object,Object)void
+      final Type type;
+
+      Setter(MethodHandle handle, Type type) {
+        this.handle = handle;
+        this.type = type;
+      }
+
+      void set(Object bean, Object value) throws Throwable {
+        handle.invokeExact(bean, value);
+      }
+    }
+
+    private BeanBinding(Class<?> type, MethodHandle constructor, Map<String, Setter> setters) {
+      this.type = type;
+      this.constructor = constructor;
+      this.setters = setters;
+    }
+
+    Object newInstance() throws Throwable {
+      if (constructor == null) {
+        throw new UnsupportedOperationException("Unsupported object type: " + type);
+      }
+      return (Object) constructor.invokeExact();
+    }
+
+    static BeanBinding of(Class<?> type) {
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      MethodHandle constructor = null;
+      try {
+        Constructor<?> c = type.getConstructor();
+        constructor = lookup.unreflectConstructor(c).asType(MethodType.methodType(Object.class));
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        // no public no-arg constructor; fail when an instance is needed
+      }
+      Map<String, Setter> setters = new HashMap<>();
+      try {
+        for (PropertyDescriptor property : Introspector.getBeanInfo(type).getPropertyDescriptors()) {
+          Method writeMethod = property.getWriteMethod();
+          if (writeMethod == null) {
+            continue;
+          }
+          MethodHandle handle;
+          try {
+            handle = lookup.unreflect(writeMethod);
+          } catch (IllegalAccessException e) {
+            continue; // not public; the property is not bound
+          }
+          setters.put(
+              property.getName(),
+              new Setter(
+                  handle.asType(MethodType.methodType(void.class, Object.class, Object.class)),
+                  writeMethod.getGenericParameterTypes()[0]));
+        }
+      } catch (IntrospectionException | RuntimeException e) {
+        throw new UnsupportedOperationException("Unsupported object type: " + type, e);
+      }
+      return new BeanBinding(type, constructor, setters);
+    }
   }
 }
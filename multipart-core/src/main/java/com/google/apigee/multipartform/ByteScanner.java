@@ -0,0 +1,41 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+/**
+ * Finds the next occurrence of a byte in an array. The multipart parser uses this to skip over
+ * body content that cannot start a delimiter.
+ *
+ * <p>This is the portable implementation, a plain loop. The multi-release jar carries a variant
+ * for Java 21 and later, under META-INF/versions/21, that examines eight bytes at a time; both
+ * must return the same results.
+ */
+final class ByteScanner {
+  private ByteScanner() {}
+
+  /**
+   * Returns the index of the first occurrence of {@code b} in {@code data[from, to)}, or {@code
+   * to} if there is none.
+   */
+  static int indexOf(byte[] data, int from, int to, byte b) {
+    int i = from;
+    while (i < to && data[i] != b) {
+      i++;
+    }
+    return i;
+  }
+}
@@ -0,0 +1,42 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Holds the bodies of parsed parts somewhere other than the heap byte arrays the parser uses by
+ * default. The parser writes a body into a {@link Sink} as it arrives, and publishes the resulting
+ * {@link PartContent} in place of a byte array.
+ *
+ * <p>A store is created for each message. If it also implements {@link java.io.Closeable}, closing
+ * it releases the storage of every body it holds; content that is still being read is released
+ * when its stream is closed.
+ */
+public interface ContentStore {
+
+  /** Begins a new body. */
+  Sink newSink();
+
+  interface Sink {
+    /** Appends the remaining bytes of the chunk. The position of the chunk is not changed. */
+    void write(ByteBuffer chunk);
+
+    /** Completes the body. The sink must not be used afterwards. */
+    PartContent finish();
+  }
+}
@@ -0,0 +1,221 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ContentStore} that holds bodies off-heap, in fixed-size direct ByteBuffer segments taken
+ * from a process-wide pool. Large uploads then do not inflate the old generation, and the segments
+ * are reused rather than collected.
+ *
+ * <p>One instance serves one message. Closing it returns the segments of all its bodies to the
+ * pool; a body that has an open stream is returned when the last such stream is closed, and
+ * cannot be opened again once the store is closed. Segments that are never returned, because the
+ * store is never closed, are reclaimed by the garbage collector like any direct buffer.
+ */
+public class DirectContentStore implements ContentStore, Closeable {
+  public static final int SEGMENT_SIZE = 64 * 1024;
+  private static final Pool pool =
+      new Pool(SEGMENT_SIZE, Integer.getInteger("mpf.direct.pool.max-segments", 256));
+
+  private final List<DirectContent> contents = new ArrayList<DirectContent>();
+  private boolean closed;
+
+  public Sink newSink() {
+    if (closed) {
+      throw new FormException(FormException.CONTENT_RELEASED, "content store is closed");
+    }
+    DirectContent content = new DirectContent();
+    contents.add(content);
+    return content;
+  }
+
+  public void close() {
+    if (!closed) {
+      closed = true;
+      for (DirectContent content : contents) {
+        content.release();
+      }
+      contents.clear();
+    }
+  }
+
+  /** The number of free segments held in the pool. */
+  public static int pooledSegments() {
+    return pool.free.size();
+  }
+
+  static final class Pool {
+    private final int segmentSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    Pool(int segmentSize, int maxPooled) {
+      this.segmentSize = segmentSize;
+      this.maxPooled = maxPooled;
+    }
+
+    ByteBuffer acquire() {
+      ByteBuffer segment = free.poll();
+      if (segment == null) {
+        return ByteBuffer.allocateDirect(segmentSize);
+      }
+      pooled.decrementAndGet();
+      segment.clear();
+      return segment;
+    }
+
+    void release(ByteBuffer segment) {
+      if (pooled.incrementAndGet() <= maxPooled) {
+        free.offer(segment);
+      } else {
+        pooled.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * A body held in direct segments. The store holds one reference, and each open stream holds
+   * another; the segments go back to the pool when the count drops to zero.
+   */
+  static final class DirectContent extends PartContent implements Sink {
+    private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+    private final AtomicInteger references = new AtomicInteger(1);
+    private ByteBuffer current;
+    private long length;
+    private boolean finished;
+
+    public void write(ByteBuffer chunk) {
+      ByteBuffer source = chunk.duplicate();
+      while (source.hasRemaining()) {
+        if (current == null || !current.hasRemaining()) {
+          current = pool.acquire();
+          segments.add(current);
+        }
+        int n = Math.min(source.remaining(), current.remaining());
+        ByteBuffer slice = source.duplicate();
+        slice.limit(slice.position() + n);
+        current.put(slice);
+        source.position(source.position() + n);
+        length += n;
+      }
+    }
+
+    public PartContent finish() {
+      for (ByteBuffer segment : segments) {
+        segment.flip();
+      }
+      current = null;
+      finished = true;
+      return this;
+    }
+
+    public long length() {
+      return length;
+    }
+
+    public InputStream openStream() throws IOException {
+      if (!finished) {
+        throw new IOException("content is not complete");
+      }
+      for (; ; ) {
+        int n = references.get();
+        if (n == 0) {
+          throw new IOException("content has been released");
+        }
+        if (references.compareAndSet(n, n + 1)) {
+          return new SegmentInputStream();
+        }
+      }
+    }
+
+    void release() {
+      if (references.decrementAndGet() == 0) {
+        for (ByteBuffer segment : segments) {
+          pool.release(segment);
+        }
+        segments.clear();
+      }
+    }
+
+    private final class SegmentInputStream extends InputStream {
+      private final ByteBuffer[] views;
+      private int index;
+      private boolean closed;
+
+      SegmentInputStream() {
+        views = new ByteBuffer[segments.size()];
+        for (int i = 0; i < views.length; i++) {
+          views[i] = segments.get(i).duplicate();
+        }
+      }
+
+      private ByteBuffer view() throws IOException {
+        if (closed) {
+          throw new IOException("stream is closed");
+        }
+        while (index < views.length && !views[index].hasRemaining()) {
+          index++;
+        }
+        return (index < views.length) ? views[index] : null;
+      }
+
+      @Override
+      public int read() throws IOException {
+        ByteBuffer view = view();
+        return (view == null) ? -1 : view.get() & 0xff;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+          return 0;
+        }
+        ByteBuffer view = view();
+        if (view == null) {
+          return -1;
+        }
+        int n = Math.min(len, view.remaining());
+        view.get(b, off, n);
+        return n;
+      }
+
+      @Override
+      public int available() throws IOException {
+        ByteBuffer view = view();
+        return (view == null) ? 0 : view.remaining();
+      }
+
+      @Override
+      public void close() {
+        if (!closed) {
+          closed = true;
+          release();
+        }
+      }
+    }
+  }
+}
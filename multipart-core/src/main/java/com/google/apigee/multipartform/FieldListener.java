@@ -0,0 +1,36 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the fields decoded by a {@link UrlEncodedParser}, in order. For each field, the parser
+ * calls onFieldStart, then onValueChunk zero or more times, then onFieldEnd.
+ */
+public interface FieldListener {
+  void onFieldStart(String name);
+
+  /**
+   * Receives the next slice of the decoded value of the current field. The bytes between the
+   * position and the limit of the buffer belong to the value. The buffer is only valid for the
+   * duration of the call; implementations that want to retain the value must copy it.
+   */
+  void onValueChunk(ByteBuffer chunk);
+
+  void onFieldEnd();
+}
@@ -0,0 +1,167 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import com.google.apigee.json.JavaxJson;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import javax.json.JsonException;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+/**
+ * Reads a form descriptor, a JSON object that maps each part name to the description of that part:
+ *
+ * <pre>
+ * {
+ *   "part1.txt" : {
+ *     "content-var" :  "variable-name-here",
+ *     "content-type" : "content-type-here",
+ *     "want-b64-decode": false
+ *   },
+ *   "terms.pdf" : {
+ *     "content-resource" : "terms.pdf",
+ *     "content-type" : "application/pdf"
+ *   }
+ * }
+ * </pre>
+ *
+ * <p>The descriptor is read in one pass with the streaming JsonParser, directly into PartSpecs,
+ * without building a JsonObject tree or intermediate maps. Unknown properties are ignored. JSON
+ * that does not parse, and a known property with a value of the wrong type, are rejected with
+ * {@link FormException#INVALID_DESCRIPTOR}.
+ */
+public class FormDescriptor {
+  private FormDescriptor() {}
+
+  public static List<PartSpec> parse(String json) {
+    List<PartSpec> specs = new ArrayList<PartSpec>();
+    try (JsonParser parser = JavaxJson.createParser(json)) {
+      if (!parser.hasNext() || parser.next() != Event.START_OBJECT) {
+        throw new FormException(
+            FormException.INVALID_DESCRIPTOR, "descriptor is not a JSON object");
+      }
+      for (Event event = parser.next(); event != Event.END_OBJECT; event = parser.next()) {
+        // event is KEY_NAME
+        PartSpec spec = new PartSpec(parser.getString());
+        if (parser.next() != Event.START_OBJECT) {
+          throw new FormException(
+              FormException.INVALID_DESCRIPTOR,
+              String.format("descriptor for part %s is not a JSON object", spec.getName()));
+        }
+        readSpec(parser, spec);
+        specs.add(spec);
+      }
+    } catch (JsonException | NoSuchElementException e) {
+      // JsonParsingException for malformed JSON, NoSuchElementException for truncated JSON
+      throw new FormException(
+          FormException.INVALID_DESCRIPTOR,
+          String.format("descriptor is not valid JSON: %s", e.getMessage()));
+    }
+    return specs;
+  }
+
+  private static void readSpec(JsonParser parser, PartSpec spec) {
+    for (Event event = parser.next(); event != Event.END_OBJECT; event = parser.next()) {
+      String key = parser.getString();
+      Event value = parser.next();
+      switch (key) {
+        case "content-var":
+          spec.setContentVar(stringValue(parser, value, spec, key));
+          break;
+        case "content-message":
+          spec.setContentMessage(stringValue(parser, value, spec, key));
+          break;
+        case "content-resource":
+          spec.setContentResource(stringValue(parser, value, spec, key));
+          break;
+        case "cacheable":
+          spec.setCacheable(booleanValue(parser, value, spec, key));
+          break;
+        case "content-type":
+          spec.setContentType(stringValue(parser, value, spec, key));
+          break;
+        case "file-name":
+          spec.setFileName(stringValue(parser, value, spec, key));
+          break;
+        case "transfer-encoding":
+          spec.setTransferEncoding(stringValue(parser, value, spec, key));
+          break;
+        case "want-b64-decode":
+          spec.setWantBase64Decode(booleanValue(parser, value, spec, key));
+          break;
+        default:
+          skip(parser, value);
+      }
+    }
+  }
+
+  private static String stringValue(JsonParser parser, Event value, PartSpec spec, String key) {
+    switch (value) {
+      case VALUE_STRING:
+      case VALUE_NUMBER:
+        return parser.getString();
+      case VALUE_NULL:
+        return null;
+      default:
+        throw wrongType(spec, key, "a string");
+    }
+  }
+
+  // true and false, or, as the descriptor has always accepted, the strings "true" and "false"
+  private static boolean booleanValue(JsonParser parser, Event value, PartSpec spec, String key) {
+    switch (value) {
+      case VALUE_TRUE:
+        return true;
+      case VALUE_FALSE:
+      case VALUE_NULL:
+        return false;
+      case VALUE_STRING:
+        if (parser.getString().equalsIgnoreCase("true")) {
+          return true;
+        }
+        if (parser.getString().equalsIgnoreCase("false")) {
+          return false;
+        }
+        throw wrongType(spec, key, "a boolean");
+      default:
+        throw wrongType(spec, key, "a boolean");
+    }
+  }
+
+  private static FormException wrongType(PartSpec spec, String key, String expected) {
+    return new FormException(
+        FormException.INVALID_DESCRIPTOR,
+        String.format("part %s: %s must be %s", spec.getName(), key, expected));
+  }
+
+  private static void skip(JsonParser parser, Event value) {
+    if (value != Event.START_OBJECT && value != Event.START_ARRAY) {
+      return;
+    }
+    int depth = 1;
+    while (depth > 0) {
+      Event event = parser.next();
+      if (event == Event.START_OBJECT || event == Event.START_ARRAY) {
+        depth++;
+      } else if (event == Event.END_OBJECT || event == Event.END_ARRAY) {
+        depth--;
+      }
+    }
+  }
+}
@@ -0,0 +1,73 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+/**
+ * A failure to parse, create or configure a form, with a stable code that callers can branch on
+ * in place of the message. Such failures are expected, and can be frequent under abusive traffic,
+ * so the exception does not capture a stack trace unless it is constructed to, or the system
+ * property <code>mpf.errors.stack-traces</code> is set. An exception with a fixed message may be
+ * allocated once, without a stack trace, and thrown many times.
+ */
+public class FormException extends IllegalStateException {
+  private static final boolean STACK_TRACES = Boolean.getBoolean("mpf.errors.stack-traces");
+
+  public static final String MISSING_CONTENT_TYPE = "missing_content_type";
+  public static final String UNSUPPORTED_CONTENT_TYPE = "unsupported_content_type";
+  public static final String MISSING_BOUNDARY = "missing_boundary";
+  public static final String TRUNCATED_FORM = "truncated_form";
+  public static final String HEADER_TOO_LONG = "header_too_long";
+  public static final String MISSING_PART_NAME = "missing_part_name";
+  public static final String INVALID_FORM = "invalid_form";
+  public static final String INVALID_ESCAPE = "invalid_escape";
+  public static final String FIELD_NAME_TOO_LONG = "field_name_too_long";
+  public static final String INVALID_DESCRIPTOR = "invalid_descriptor";
+  public static final String UNSUPPORTED_ENCODING = "unsupported_encoding";
+  public static final String INVALID_COMPRESSION_LEVEL = "invalid_compression_level";
+  public static final String DECOMPRESSION_LIMIT = "decompression_limit";
+  public static final String UNSUPPORTED_VISITOR = "unsupported_visitor";
+  public static final String CONTENT_RELEASED = "content_released";
+
+  private final String code;
+
+  public FormException(String code, String message) {
+    this(code, message, STACK_TRACES);
+  }
+
+  public FormException(String code, String message, boolean withStackTrace) {
+    super(message);
+    this.code = code;
+    if (withStackTrace) {
+      super.fillInStackTrace();
+    }
+  }
+
+  public String getCode() {
+    return code;
+  }
+
+  /** A new exception with the same code and message, and the stack trace of the caller. */
+  public FormException withStackTrace() {
+    return new FormException(code, getMessage(), true);
+  }
+
+  // Called by the Throwable constructor; the trace, if wanted, is captured after construction.
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
@@ -0,0 +1,339 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable index over a parsed form: the retained body of the form, and for each part its
+ * headers and the offset and length of its content within that body. The content of a part is
+ * served as a slice of the body, so a form parsed once can be forwarded, in whole or in part,
+ * without copying.
+ *
+ * <p>The body array is shared by the index and every slice taken from it, and must not be modified
+ * after the index is built.
+ */
+public final class FormIndex {
+  private static final Pattern fileNamePattern =
+      Pattern.compile("filename=['\"]([^'\"]*)['\"]");
+  // below this, a segment is not worth a task of its own
+  static final int MIN_SEGMENT_SIZE = 1024 * 1024;
+
+  public static final class Entry {
+    private final String name;
+    private final Map<String, String> headers;
+    private final int offset;
+    private final int length;
+
+    Entry(String name, Map<String, String> headers, int offset, int length) {
+      this.name = name;
+      this.headers = Collections.unmodifiableMap(headers);
+      this.offset = offset;
+      this.length = length;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /** The headers of the part, keyed by lower-case name. */
+    public Map<String, String> getHeaders() {
+      return headers;
+    }
+
+    public String getContentType() {
+      return headers.get("content-type");
+    }
+
+    /** The filename parameter of the content-disposition header, or null. */
+    public String getFileName() {
+      String disposition = headers.get("content-disposition");
+      if (disposition == null) {
+        return null;
+      }
+      Matcher matcher = fileNamePattern.matcher(disposition);
+      return matcher.find() ? matcher.group(1) : null;
+    }
+
+    public int getOffset() {
+      return offset;
+    }
+
+    public int getLength() {
+      return length;
+    }
+  }
+
+  private final byte[] body;
+  private final List<Entry> entries;
+
+  private FormIndex(byte[] body, List<Entry> entries) {
+    this.body = body;
+    this.entries = Collections.unmodifiableList(entries);
+  }
+
+  public List<Entry> getParts() {
+    return entries;
+  }
+
+  /** The first part with the given name, or null. */
+  public Entry get(String name) {
+    for (Entry entry : entries) {
+      if (name.equals(entry.getName())) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /** The content of the part, as a slice of the retained body. */
+  public PartContent content(Entry entry) {
+    return PartContent.of(body, entry.getOffset(), entry.getLength());
+  }
+
+  /** A read-only view of the content of the part. */
+  public ByteBuffer buffer(Entry entry) {
+    return ByteBuffer.wrap(body, entry.getOffset(), entry.getLength()).asReadOnlyBuffer();
+  }
+
+  /**
+   * The content of the part as a slice of the retained array, for part visitors, which read a
+   * buffer with an array in bulk rather than byte by byte. It must not be written to.
+   */
+  public ByteBuffer slice(Entry entry) {
+    return ByteBuffer.wrap(body, entry.getOffset(), entry.getLength());
+  }
+
+  /**
+   * Parses the first length bytes of body as a multipart form with the given boundary, and indexes
+   * it. The array is retained, not copied.
+   *
+   * @throws IllegalStateException if the form is malformed
+   */
+  public static FormIndex build(byte[] body, int length, String boundary) {
+    Indexer indexer = new Indexer(body);
+    MultipartParser parser = new MultipartParser(boundary, indexer);
+    parser.feed(body, 0, length);
+    parser.finish();
+    return new FormIndex(body, indexer.entries);
+  }
+
+  /**
+   * Like {@link #build(byte[], int, String)}, but searches the body for delimiters, and parses the
+   * parts between them, in parallel on the given pool. The body is split into segments of at least
+   * {@link #MIN_SEGMENT_SIZE} bytes; each segment is searched for "--" + boundary, reading up to
+   * the length of that pattern, less one, past its end, so that a match that straddles two
+   * segments is found once, by the earlier segment. The hits are merged in order into the list of
+   * delimiters, and each part is then parsed on its own, between its two delimiters.
+   *
+   * <p>The result is the same as that of the serial build. Forms the parallel path does not
+   * handle, such as a first delimiter without the leading dashes, and malformed forms, are handed
+   * to the serial build, which indexes them or reports the error.
+   */
+  public static FormIndex build(byte[] body, int length, String boundary, ForkJoinPool pool) {
+    // the parallel path makes two passes over the body; on one thread, it would only be slower
+    int segments = Math.min(pool.getParallelism() * 4, length / MIN_SEGMENT_SIZE);
+    if (pool.getParallelism() < 2 || segments < 2 || boundary == null || boundary.isEmpty()) {
+      return build(body, length, boundary);
+    }
+    byte[] dashBoundary = ("--" + boundary).getBytes(StandardCharsets.UTF_8);
+    byte[] bareBoundary = boundary.getBytes(StandardCharsets.UTF_8);
+    List<Integer> hits = search(body, length, dashBoundary, segments, pool);
+    int[] delimiters = delimiters(body, length, bareBoundary, dashBoundary, hits);
+    List<Entry> entries =
+        (delimiters == null)
+            ? null
+            : parseParts(body, delimiters, dashBoundary.length, boundary, segments, pool);
+    return (entries == null) ? build(body, length, boundary) : new FormIndex(body, entries);
+  }
+
+  private static List<Integer> search(
+      byte[] body, int length, byte[] pattern, int segments, ForkJoinPool pool) {
+    int size = (length + segments - 1) / segments;
+    List<ForkJoinTask<List<Integer>>> tasks = new ArrayList<ForkJoinTask<List<Integer>>>();
+    for (int start = 0; start < length; start += size) {
+      final int from = start;
+      final int to = Math.min(length, start + size);
+      tasks.add(pool.submit(() -> find(body, from, to, length, pattern)));
+    }
+    List<Integer> hits = new ArrayList<Integer>();
+    for (ForkJoinTask<List<Integer>> task : tasks) {
+      hits.addAll(task.join());
+    }
+    return hits;
+  }
+
+  /** The positions of the matches of pattern that start in [from, to), in order. */
+  static List<Integer> find(byte[] body, int from, int to, int length, byte[] pattern) {
+    List<Integer> hits = new ArrayList<Integer>();
+    int limit = Math.min(to, length - pattern.length + 1);
+    for (int i = from; (i = ByteScanner.indexOf(body, i, limit, pattern[0])) < limit; i++) {
+      if (matchesAt(body, i, pattern)) {
+        hits.add(i);
+      }
+    }
+    return hits;
+  }
+
+  private static boolean matchesAt(byte[] body, int i, byte[] pattern) {
+    for (int j = 1; j < pattern.length; j++) {
+      if (body[i + j] != pattern[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Selects the delimiters from the hits, as the serial parser would: the first hit, then each
+   * later hit that follows a CRLF and lies beyond the previous delimiter, up to the first one that
+   * is followed by "--". Returns null when the serial parser should decide instead.
+   */
+  private static int[] delimiters(
+      byte[] body, int length, byte[] bareBoundary, byte[] dashBoundary, List<Integer> hits) {
+    if (hits.isEmpty()) {
+      return null;
+    }
+    int first = hits.get(0);
+    // the serial parser accepts a bare boundary in the preamble as the first delimiter
+    // before the one within the first dash boundary, at first + 2
+    if (!find(body, 0, first + 2, length, bareBoundary).isEmpty()) {
+      return null;
+    }
+    int[] delimiters = new int[hits.size()];
+    int count = 0;
+    delimiters[count++] = first;
+    int end = first + dashBoundary.length;
+    int k = 1;
+    while (!(end + 1 < length && body[end] == '-' && body[end + 1] == '-')) {
+      while (k < hits.size() && !isDelimiter(body, hits.get(k), end)) {
+        k++;
+      }
+      if (k == hits.size()) {
+        return null;
+      }
+      int hit = hits.get(k++);
+      delimiters[count++] = hit;
+      end = hit + dashBoundary.length;
+    }
+    return Arrays.copyOf(delimiters, count);
+  }
+
+  private static boolean isDelimiter(byte[] body, int hit, int previousEnd) {
+    return hit >= previousEnd + 2 && body[hit - 2] == '\r' && body[hit - 1] == '\n';
+  }
+
+  /**
+   * Parses the parts between consecutive delimiters, in batches on the pool. Each part is fed to
+   * a parser of its own, from its opening delimiter to the end of its closing one. Returns null if
+   * any stretch does not hold exactly one well-formed part.
+   */
+  private static List<Entry> parseParts(
+      byte[] body,
+      int[] delimiters,
+      int delimiterLength,
+      String boundary,
+      int segments,
+      ForkJoinPool pool) {
+    int parts = delimiters.length - 1;
+    int batch = Math.max(1, (parts + segments - 1) / segments);
+    List<ForkJoinTask<List<Entry>>> tasks = new ArrayList<ForkJoinTask<List<Entry>>>();
+    for (int start = 0; start < parts; start += batch) {
+      final int from = start;
+      final int to = Math.min(parts, start + batch);
+      tasks.add(
+          pool.submit(
+              () -> {
+                Indexer indexer = new Indexer(body);
+                for (int i = from; i < to; i++) {
+                  MultipartParser parser = new MultipartParser(boundary, indexer);
+                  int offset = delimiters[i];
+                  parser.feed(body, offset, delimiters[i + 1] + delimiterLength - offset);
+                  if (parser.getPartCount() != 1 || indexer.entries.size() != i - from + 1) {
+                    return null;
+                  }
+                }
+                return indexer.entries;
+              }));
+    }
+    List<Entry> entries = new ArrayList<Entry>(parts);
+    for (ForkJoinTask<List<Entry>> task : tasks) {
+      List<Entry> batchEntries = task.join();
+      if (batchEntries == null) {
+        return null;
+      }
+      entries.addAll(batchEntries);
+    }
+    return entries;
+  }
+
+  // The body is fed in one call, so every body chunk is a view of the body array itself, and the
+  // chunks of one part are contiguous.
+  private static class Indexer implements PartListener {
+    private final byte[] body;
+    final List<Entry> entries = new ArrayList<Entry>();
+    private Map<String, String> headers;
+    private int offset;
+    private int length;
+
+    Indexer(byte[] body) {
+      this.body = body;
+    }
+
+    public void onPartStart() {
+      headers = new LinkedHashMap<String, String>();
+      offset = -1;
+      length = 0;
+    }
+
+    public void onHeader(String name, String value) {
+      headers.put(name.toLowerCase(), value);
+    }
+
+    public void onBodyChunk(ByteBuffer chunk) {
+      int start = chunk.arrayOffset() + chunk.position();
+      if (chunk.array() != body || (offset >= 0 && start != offset + length)) {
+        throw new FormException(
+            FormException.INVALID_FORM, "part content is not contiguous in the form body");
+      }
+      if (offset < 0) {
+        offset = start;
+      }
+      length += chunk.remaining();
+    }
+
+    public void onPartEnd() {
+      String disposition = headers.get("content-disposition");
+      String name = (disposition == null) ? null : Part.nameFromContentDisposition(disposition);
+      if (name == null) {
+        throw new FormException(FormException.MISSING_PART_NAME, "part.getName() is null");
+      }
+      entries.add(new Entry(name, headers, Math.max(offset, 0), length));
+    }
+  }
+}
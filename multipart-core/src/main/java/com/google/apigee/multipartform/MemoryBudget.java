@@ -0,0 +1,235 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.io.Closeable;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A count of the bytes that callouts may buffer at the same moment. A callout reserves bytes
+ * before it buffers them, and releases them when it is done; when the budget is exhausted, it can
+ * wait for other callouts to release, or give up. Reserving is a compare-and-set on one counter;
+ * there is no lock, and a waiter polls with a short, growing pause.
+ *
+ * <p>Bytes that outlive the callout, because the flow keeps the content, are held in a {@link
+ * Lease}. A lease is released when it is closed, or, failing that, once the garbage collector
+ * finds it unreachable; the budget reclaims such leases when a reservation does not fit.
+ */
+public final class MemoryBudget {
+  private static final MemoryBudget shared =
+      new MemoryBudget(
+          Long.getLong("mpf.memory-budget.max-bytes", Runtime.getRuntime().maxMemory() / 2));
+
+  private static final long MIN_PAUSE_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+  private static final long MAX_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long STEP = 64 * 1024;
+
+  private final long maxBytes;
+  private final AtomicLong reserved = new AtomicLong();
+  private final ReferenceQueue<Lease> unreachable = new ReferenceQueue<Lease>();
+  private final Set<LeaseReference> leases =
+      Collections.newSetFromMap(new ConcurrentHashMap<LeaseReference, Boolean>());
+
+  public MemoryBudget(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /** The budget shared by all callouts in this JVM. */
+  public static MemoryBudget shared() {
+    return shared;
+  }
+
+  public long maxBytes() {
+    return maxBytes;
+  }
+
+  public long reservedBytes() {
+    reclaimUnreachableLeases();
+    return reserved.get();
+  }
+
+  /** Reserves the bytes if they fit in the budget now; never waits. */
+  public boolean tryReserve(long bytes) {
+    if (bytes <= 0) {
+      return true;
+    }
+    while (true) {
+      long current = reserved.get();
+      if (bytes > maxBytes - current) {
+        if (reclaimUnreachableLeases()) {
+          continue;
+        }
+        return false;
+      }
+      if (reserved.compareAndSet(current, current + bytes)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Reserves the bytes, waiting up to the timeout for them to fit. A request larger than the
+   * whole budget fails at once.
+   */
+  public boolean reserve(long bytes, long timeoutMillis) throws InterruptedException {
+    if (tryReserve(bytes)) {
+      return true;
+    }
+    if (bytes > maxBytes || timeoutMillis <= 0) {
+      return false;
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    long pause = MIN_PAUSE_NANOS;
+    while (true) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      LockSupport.parkNanos(this, Math.min(pause, remaining));
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      if (tryReserve(bytes)) {
+        return true;
+      }
+      pause = Math.min(pause * 2, MAX_PAUSE_NANOS);
+    }
+  }
+
+  public void release(long bytes) {
+    if (bytes > 0) {
+      reserved.addAndGet(-bytes);
+    }
+  }
+
+  // Releases the bytes of the leases that the garbage collector has found unreachable, and
+  // reports whether there were any.
+  private boolean reclaimUnreachableLeases() {
+    boolean reclaimed = false;
+    Reference<? extends Lease> ref;
+    while ((ref = unreachable.poll()) != null) {
+      LeaseReference lease = (LeaseReference) ref;
+      leases.remove(lease);
+      release(lease.bytes.getAndSet(0));
+      reclaimed = true;
+    }
+    return reclaimed;
+  }
+
+  /** Opens a reservation that grows as its holder buffers more, and releases all of it on close. */
+  public Reservation open() {
+    return new Reservation();
+  }
+
+  /** The bytes held by one callout invocation. Not thread-safe. */
+  public final class Reservation implements AutoCloseable {
+    private long held;
+
+    private Reservation() {}
+
+    public long heldBytes() {
+      return held;
+    }
+
+    /**
+     * Grows the reservation to cover the given total, waiting up to the timeout. The growth is
+     * rounded up to a whole number of 64KB steps when that fits, so that a holder that calls this
+     * for every chunk it reads does not touch the shared counter each time.
+     */
+    public boolean ensure(long total, long timeoutMillis) throws InterruptedException {
+      if (total <= held) {
+        return true;
+      }
+      long needed = total - held;
+      long step = (needed + STEP - 1) / STEP * STEP;
+      if (step > needed && tryReserve(step)) {
+        held += step;
+        return true;
+      }
+      if (reserve(needed, timeoutMillis)) {
+        held += needed;
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Moves the bytes of this reservation to a new lease, for content that the flow keeps after
+     * the callout returns. The reservation is left empty.
+     */
+    public Lease lease() {
+      Lease lease = new Lease();
+      addTo(lease);
+      return lease;
+    }
+
+    /** Moves the bytes of this reservation to an open lease of the same budget. */
+    public void addTo(Lease lease) {
+      lease.bytes.addAndGet(held);
+      held = 0;
+    }
+
+    public void close() {
+      release(held);
+      held = 0;
+    }
+  }
+
+  /**
+   * Bytes held on behalf of content that a flow keeps. Closing the lease releases them; a lease
+   * that is never closed is released after the garbage collector finds it unreachable.
+   * Thread-safe.
+   */
+  public final class Lease implements Closeable {
+    private final AtomicLong bytes = new AtomicLong();
+    private final LeaseReference ref;
+
+    private Lease() {
+      reclaimUnreachableLeases();
+      ref = new LeaseReference(this, bytes);
+      leases.add(ref);
+    }
+
+    public long heldBytes() {
+      return bytes.get();
+    }
+
+    public void close() {
+      leases.remove(ref);
+      release(bytes.getAndSet(0));
+    }
+  }
+
+  // Outlives its lease, to release the bytes of a lease that was never closed. A closed lease
+  // holds no bytes, so releasing it again is harmless.
+  private final class LeaseReference extends PhantomReference<Lease> {
+    final AtomicLong bytes;
+
+    LeaseReference(Lease lease, AtomicLong bytes) {
+      super(lease, unreachable);
+      this.bytes = bytes;
+    }
+  }
+}
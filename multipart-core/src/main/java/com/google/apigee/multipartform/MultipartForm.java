@@ -0,0 +1,131 @@
+// Copyright 2021-2023 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+package com.google.apigee.multipartform;
+
+import com.google.apigee.stream.ConcatenatedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MultipartForm {
+  private List<Part> parts;
+  private String boundary;
+
+  public MultipartForm(String boundary, List<Part> parts) {
+    this.boundary = boundary;
+    this.parts = parts;
+  }
+
+  private static boolean isEmptyString(String s){
+    return s == null || s.trim().equals("");
+  }
+
+  /**
+   * Returns the encoded header block for a part: the Content-Disposition, Content-Type and optional
+   * Content-Transfer-Encoding headers, and the empty line that ends them. This does not depend on
+   * the boundary, so callers that create many forms with the same part can encode it once, and set
+   * it into the part with {@link Part#withEncodedHeaders(byte[])}.
+   */
+  public static byte[] encodeHeaders(Part part) {
+    String contentDisposition =
+      String.format("form-data; name=\"%s\"", part.getName()) ;
+    if (!isEmptyString(part.getFileName())) {
+      contentDisposition += String.format("; filename=\"%s\"", part.getFileName());
+    }
+
+    String headers =
+      "Content-Disposition: "
+      + contentDisposition
+      + "\r\n"
+      + "Content-Type: "
+      + part.getContentType()
+      + "\r\n";
+
+    if (!isEmptyString(part.getTransferEncoding())) {
+      headers +=
+        ""
+        + "Content-Transfer-Encoding: "
+        + part.getTransferEncoding()
+        + "\r\n";
+    }
+
+    headers += "\r\n";
+    return headers.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] headersFor(Part part) {
+    byte[] headers = part.getEncodedHeaders();
+    return (headers != null) ? headers : encodeHeaders(part);
+  }
+
+  private byte[] delimiter() {
+    final String delimiter =
+        "\r\n"
+        + "--"
+        + boundary
+        + "\r\n";
+    return delimiter.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private byte[] trailer() {
+    final String trailer =
+        "\r\n"
+        + "--"
+        + boundary
+      + "--\r\n";
+    return trailer.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the number of bytes that the stream returned by openStream() will produce, or -1 if the
+   * content of some part has a length that is not known before it is read.
+   */
+  public long getContentLength() {
+    long length = 0;
+    int delimiterLength = delimiter().length;
+    for (Part part : parts) {
+      long size = part.getContent().length();
+      if (size < 0) {
+        return -1;
+      }
+      length += delimiterLength + headersFor(part).length + size;
+    }
+    return length + trailer().length;
+  }
+
+  /**
+   * Returns a stream over the form. The content of each part is opened only when the reader reaches
+   * it, so content that is not held in memory is streamed, not copied.
+   */
+  public InputStream openStream() {
+    // assemble content
+    byte[] delimiter = delimiter();
+    List<ConcatenatedInputStream.Source> sources = new ArrayList<ConcatenatedInputStream.Source>();
+    for (Part part : parts) {
+      byte[] headers = headersFor(part);
+      sources.add(() -> new ByteArrayInputStream(delimiter));
+      sources.add(() -> new ByteArrayInputStream(headers));
+      sources.add(part.getContent().asSource());
+    }
+    byte[] trailer = trailer();
+    sources.add(() -> new ByteArrayInputStream(trailer));
+
+    return new ConcatenatedInputStream(sources);
+  }
+
+}
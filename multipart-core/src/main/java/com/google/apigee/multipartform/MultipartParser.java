@@ -0,0 +1,388 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An incremental, push-style parser for multipart/form-data content. Callers hand the content to
+ * {@link #feed(ByteBuffer)} in chunks of any size, as it arrives, and the parser emits part-start,
+ * header, body-chunk and part-end events to a {@link PartListener}. A delimiter may be split across
+ * any number of chunks; the parser carries the partial match from one chunk to the next and never
+ * needs to see the whole body.
+ *
+ * <p>The first delimiter line is normally "--" followed by the boundary, per RFC 2046. For
+ * compatibility with senders that omit the leading dashes, a first delimiter line that consists of
+ * the bare boundary is also accepted; the form observed on the first delimiter is then used for the
+ * rest of the content.
+ *
+ * <p>This class is not thread safe. Use one instance per form.
+ */
+public class MultipartParser {
+  public static final int MAX_HEADER_LINE_LENGTH = 8192;
+  private static final int SCRATCH_SIZE = 8192;
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+  private static final byte DASH = '-';
+
+  // Thrown for every message with a bad content-type, so allocated once.
+  private static final FormException MISSING_CONTENT_TYPE =
+      new FormException(
+          FormException.MISSING_CONTENT_TYPE, "missing content-type header", false);
+  private static final FormException NOT_MULTIPART =
+      new FormException(
+          FormException.UNSUPPORTED_CONTENT_TYPE,
+          "content-type does not contain multipart/form-data",
+          false);
+  private static final FormException MISSING_BOUNDARY_PARAMETER =
+      new FormException(
+          FormException.MISSING_BOUNDARY,
+          "content-type does not contain boundary parameter",
+          false);
+  private static final FormException EMPTY_BOUNDARY_PARAMETER =
+      new FormException(
+          FormException.MISSING_BOUNDARY,
+          "multipart/form-data content-type does not contain 'boundary'",
+          false);
+
+  private enum State {
+    PREAMBLE,
+    DELIMITER,
+    HEADERS,
+    BODY,
+    EPILOGUE
+  }
+
+  private final PartListener listener;
+
+  // used only in the preamble, to find the first delimiter in either form
+  private final byte[] dashBoundary;
+  private final int[] dashBorders;
+  private final byte[] bareBoundary;
+  private final int[] bareBorders;
+  private int dashMatched;
+  private int bareMatched;
+
+  // CRLF + the delimiter as observed in the preamble
+  private byte[] delimiter;
+  private int[] borders;
+
+  private State state = State.PREAMBLE;
+  private int matched; // number of delimiter bytes matched so far
+  private int held; // of those, the number that arrived in earlier chunks
+  private int prev = -1;
+  private byte[] line = new byte[256];
+  private int lineLength;
+  private long position;
+  private int partCount;
+  private byte[] scratch;
+  // Reusable views for body chunks, which are valid only for the duration of a listener call.
+  private ByteBuffer dataView;
+  private ByteBuffer delimiterView;
+
+  public MultipartParser(String boundary, PartListener listener) {
+    if (boundary == null || boundary.isEmpty()) {
+      throw new FormException(FormException.MISSING_BOUNDARY, "boundary is empty");
+    }
+    this.listener = listener;
+    this.bareBoundary = boundary.getBytes(StandardCharsets.UTF_8);
+    this.bareBorders = borders(bareBoundary);
+    this.dashBoundary = new byte[bareBoundary.length + 2];
+    dashBoundary[0] = DASH;
+    dashBoundary[1] = DASH;
+    System.arraycopy(bareBoundary, 0, dashBoundary, 2, bareBoundary.length);
+    this.dashBorders = borders(dashBoundary);
+  }
+
+  /**
+   * Returns the boundary parameter of a multipart/form-data content-type header.
+   *
+   * @throws FormException if the header is missing, is not multipart/form-data, or has no
+   *     boundary.
+   */
+  public static String boundaryOf(String contentType) {
+    if (contentType == null) {
+      throw MISSING_CONTENT_TYPE;
+    }
+    if (!contentType.contains("multipart/form-data")) {
+      throw NOT_MULTIPART;
+    }
+    if (!contentType.contains("boundary")) {
+      throw MISSING_BOUNDARY_PARAMETER;
+    }
+    for (String param : contentType.split(";")) {
+      param = param.trim();
+      if (param.toLowerCase().contains("boundary")) {
+        String[] pair = param.split("=");
+        String boundary = (pair.length == 2) ? pair[1].trim() : "";
+        if (boundary.isEmpty()) {
+          break;
+        }
+        return boundary;
+      }
+    }
+    throw EMPTY_BOUNDARY_PARAMETER;
+  }
+
+  /** The total number of bytes fed to this parser so far. */
+  public long getPosition() {
+    return position;
+  }
+
+  /** The number of parts started so far. */
+  public int getPartCount() {
+    return partCount;
+  }
+
+  /** True once the closing delimiter has been seen. Any content after it is ignored. */
+  public boolean isComplete() {
+    return state == State.EPILOGUE;
+  }
+
+  /**
+   * Consumes all the remaining bytes of the given buffer, emitting events as parts are found. On
+   * return, the position of the buffer equals its limit.
+   */
+  public void feed(ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      int offset = buffer.arrayOffset() + buffer.position();
+      feed(buffer.array(), offset, buffer.remaining());
+      buffer.position(buffer.limit());
+      return;
+    }
+    if (scratch == null) {
+      scratch = new byte[SCRATCH_SIZE];
+    }
+    while (buffer.hasRemaining()) {
+      int n = Math.min(buffer.remaining(), scratch.length);
+      buffer.get(scratch, 0, n);
+      feed(scratch, 0, n);
+    }
+  }
+
+  public void feed(byte[] data, int offset, int length) {
+    int end = offset + length;
+    int i = offset;
+    while (i < end) {
+      switch (state) {
+        case PREAMBLE:
+          i = scanPreamble(data, i, end);
+          break;
+        case DELIMITER:
+          i = scanDelimiterTail(data, i, end);
+          break;
+        case HEADERS:
+          i = scanHeaders(data, i, end);
+          break;
+        case BODY:
+          i = scanBody(data, i, end);
+          break;
+        default:
+          // epilogue: discard
+          i = end;
+      }
+    }
+    position += length;
+  }
+
+  /**
+   * Signals the end of the content.
+   *
+   * @throws IllegalStateException if the content ended before the closing delimiter.
+   */
+  public void finish() {
+    if (state == State.PREAMBLE || state == State.EPILOGUE) {
+      return;
+    }
+    throw new FormException(
+        FormException.TRUNCATED_FORM, "multipart content ended before the closing delimiter");
+  }
+
+  private int scanPreamble(byte[] data, int i, int end) {
+    while (i < end) {
+      byte b = data[i++];
+      dashMatched = step(dashBoundary, dashBorders, dashMatched, b);
+      bareMatched = step(bareBoundary, bareBorders, bareMatched, b);
+      if (bareMatched == bareBoundary.length) {
+        byte[] observed = (dashMatched == dashBoundary.length) ? dashBoundary : bareBoundary;
+        delimiter = new byte[observed.length + 2];
+        delimiter[0] = CR;
+        delimiter[1] = LF;
+        System.arraycopy(observed, 0, delimiter, 2, observed.length);
+        borders = borders(delimiter);
+        enterDelimiterTail();
+        return i;
+      }
+    }
+    return i;
+  }
+
+  // After a delimiter: either "--" marks the close, or the line ends and headers follow.
+  private int scanDelimiterTail(byte[] data, int i, int end) {
+    while (i < end) {
+      byte b = data[i++];
+      if (b == DASH && prev == DASH) {
+        state = State.EPILOGUE;
+        return end;
+      }
+      if (b == LF && prev == CR) {
+        state = State.HEADERS;
+        lineLength = 0;
+        partCount++;
+        listener.onPartStart();
+        return i;
+      }
+      prev = b;
+    }
+    return i;
+  }
+
+  private int scanHeaders(byte[] data, int i, int end) {
+    while (i < end) {
+      byte b = data[i++];
+      if (b == LF && lineLength > 0 && line[lineLength - 1] == CR) {
+        int length = lineLength - 1;
+        lineLength = 0;
+        if (length == 0) {
+          state = State.BODY;
+          matched = 0;
+          held = 0;
+          return i;
+        }
+        emitHeader(length);
+        continue;
+      }
+      if (lineLength == line.length) {
+        if (lineLength >= MAX_HEADER_LINE_LENGTH) {
+          throw new FormException(
+              FormException.HEADER_TOO_LONG, "part header exceeds maximum length");
+        }
+        line = Arrays.copyOf(line, Math.min(line.length * 2, MAX_HEADER_LINE_LENGTH));
+      }
+      line[lineLength++] = b;
+    }
+    return i;
+  }
+
+  private void emitHeader(int length) {
+    String hdr = new String(line, 0, length, StandardCharsets.UTF_8);
+    int colon = hdr.indexOf(':');
+    if (colon > 0) {
+      listener.onHeader(hdr.substring(0, colon).trim(), hdr.substring(colon + 1).trim());
+    }
+  }
+
+  private int scanBody(byte[] data, int i, int end) {
+    final byte[] delim = delimiter;
+    final byte first = delim[0];
+    int runStart = i;
+    int j = matched;
+    while (i < end) {
+      if (j == 0) {
+        // fast path: skip ahead to the next byte that could start a delimiter
+        i = ByteScanner.indexOf(data, i, end, first);
+        if (i == end) {
+          break;
+        }
+      }
+      byte b = data[i++];
+      while (j >= 0 && b != delim[j]) {
+        if (j > 0 && held > 0) {
+          // The partial match shrinks; release its leading bytes, which arrived in earlier
+          // chunks, as body. They are known to equal the leading bytes of the delimiter.
+          int released = Math.min(j - borders[j], held);
+          listener.onBodyChunk(view(delimiterView(), 0, released));
+          held -= released;
+        }
+        j = borders[j];
+      }
+      j++;
+      if (j == delim.length) {
+        int matchStart = i - (delim.length - held);
+        if (matchStart > runStart) {
+          listener.onBodyChunk(view(dataView(data), runStart, matchStart - runStart));
+        }
+        listener.onPartEnd();
+        matched = 0;
+        held = 0;
+        enterDelimiterTail();
+        return i;
+      }
+    }
+    // hold back the partial match, if any, until the next chunk resolves it
+    int matchStart = end - (j - held);
+    if (matchStart > runStart) {
+      listener.onBodyChunk(view(dataView(data), runStart, matchStart - runStart));
+    }
+    matched = j;
+    held = j;
+    return end;
+  }
+
+  private ByteBuffer dataView(byte[] data) {
+    if (dataView == null || dataView.array() != data) {
+      dataView = ByteBuffer.wrap(data);
+    }
+    return dataView;
+  }
+
+  private ByteBuffer delimiterView() {
+    if (delimiterView == null) {
+      delimiterView = ByteBuffer.wrap(delimiter);
+    }
+    return delimiterView;
+  }
+
+  private static ByteBuffer view(ByteBuffer buffer, int offset, int length) {
+    buffer.clear();
+    buffer.position(offset);
+    buffer.limit(offset + length);
+    return buffer;
+  }
+
+  private void enterDelimiterTail() {
+    state = State.DELIMITER;
+    prev = -1;
+  }
+
+  private static int step(byte[] pattern, int[] borders, int j, byte b) {
+    if (j == pattern.length) {
+      j = borders[j];
+    }
+    while (j >= 0 && b != pattern[j]) {
+      j = borders[j];
+    }
+    return j + 1;
+  }
+
+  // Knuth-Morris-Pratt border table, as in StreamSearcher.
+  private static int[] borders(byte[] pattern) {
+    int[] borders = new int[pattern.length + 1];
+    int i = 0;
+    int j = -1;
+    borders[i] = j;
+    while (i < pattern.length) {
+      while (j >= 0 && pattern[i] != pattern[j]) {
+        j = borders[j];
+      }
+      borders[++i] = ++j;
+    }
+    return borders;
+  }
+}
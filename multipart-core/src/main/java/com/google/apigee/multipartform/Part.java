@@ -16,31 +16,45 @@
 
 package com.google.apigee.multipartform;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class Part {
-  private byte[] partContent;
+  private static final Pattern namePattern = Pattern.compile("name=['\"]([^'\"]+)['\"]");
+  private PartContent content;
 
   public void setPartContent(byte[] value) {
-    this.partContent = value;
+    this.content = (value == null) ? null : PartContent.of(value);
   }
 
+  /**
+   * Returns the content as a byte array. For content that is not held in a byte array, this reads
+   * the content.
+   */
   public byte[] getPartContent() {
-    return partContent;
+    if (content == null) {
+      return null;
+    }
+    try {
+      return content.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public PartContent getContent() {
+    return content;
   }
 
+  /** Returns the size of the content in bytes, or -1 if that is not known before reading it. */
   public int getSize() {
-    return partContent.length;
+    return (int) content.length();
   }
 
   private String fileName;
@@ -73,6 +87,12 @@ public class Part {
     return contentType;
   }
 
+  private byte[] encodedHeaders;
+
+  public byte[] getEncodedHeaders() {
+    return encodedHeaders;
+  }
+
   private String name;
 
   public String getName() {
@@ -83,58 +103,56 @@ public class Part {
     this.name = partName;
   }
 
-  private static String lineFrom(InputStream in) throws IOException {
-    byte[] buf = new byte[256];
-    int pos = 0;
-    int prev = 0;
-    int cur = 0;
-    for (; ; ) {
-      cur = in.read();
-      if (cur == '\n' && prev == '\r') break;
-      buf[pos++] = (byte) cur;
-      if (pos == buf.length) {
-        // expand
-        buf = Arrays.copyOf(buf, pos + 256);
-      }
-      prev = cur;
-    }
-    // omit trailing CR
-    return new String(Arrays.copyOf(buf, pos - 1), "UTF-8");
+  /** Returns the value of the name parameter in a content-disposition header, or null. */
+  public static String nameFromContentDisposition(String disposition) {
+    Matcher matcher = namePattern.matcher(disposition);
+    return matcher.find() ? matcher.group(1) : null;
   }
 
+  /**
+   * Parses a part: header lines, a blank line, then the content. The content of the returned Part
+   * shares the given array; it is not copied.
+   */
   public static Part parse(byte[] bytes) throws IOException {
-    ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
     String partName = null;
     String ctype = null;
+    int pos = 0;
     for (; ; ) {
-      String hdr = lineFrom(bis);
-      if (hdr.length() == 0) break; // end of headers
-      List<String> components =
-          Arrays.stream(hdr.split(":", 2)).map(s -> s.trim()).collect(Collectors.toList());
-
-      String headerName = components.get(0).toLowerCase();
+      int eol = indexOfCrlf(bytes, pos);
+      if (eol < 0) {
+        throw new IOException("part headers are not terminated");
+      }
+      if (eol == pos) {
+        pos += 2; // end of headers
+        break;
+      }
+      String hdr = new String(bytes, pos, eol - pos, StandardCharsets.UTF_8);
+      pos = eol + 2;
+      int colon = hdr.indexOf(':');
+      if (colon < 0) {
+        continue;
+      }
+      String headerName = hdr.substring(0, colon).trim().toLowerCase();
       if (headerName.equals("content-disposition")) {
-        Pattern pattern = Pattern.compile("name=['\"]([^'\"]+)['\"]");
-        Matcher matcher = pattern.matcher(components.get(1));
-        if (matcher.find()) {
-          partName = matcher.group(1);
-        }
+        partName = nameFromContentDisposition(hdr.substring(colon + 1).trim());
       } else if (headerName.equals("content-type")) {
-        ctype = components.get(1);
+        ctype = hdr.substring(colon + 1).trim();
       }
     }
 
-    Part part = new Part(partName).withContentType(ctype);
-
     // remaining data is content
-    int b;
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    while ((b = bis.read()) != -1) {
-      baos.write(b);
-    }
-    part.setPartContent(baos.toByteArray());
+    return new Part(partName)
+        .withContentType(ctype)
+        .withContent(PartContent.of(bytes, pos, bytes.length - pos));
+  }
 
-    return part;
+  private static int indexOfCrlf(byte[] bytes, int from) {
+    for (int i = from; i < bytes.length - 1; i++) {
+      if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+        return i;
+      }
+    }
+    return -1;
   }
 
   public Part withContentType(String contentType) {
@@ -154,7 +172,12 @@ public class Part {
   }
 
   public Part withPartContent(byte[] partContent) {
-    this.partContent = partContent;
+    setPartContent(partContent);
+    return this;
+  }
+
+  public Part withContent(PartContent content) {
+    this.content = content;
     return this;
   }
 
@@ -167,4 +190,14 @@ public class Part {
     this.fileName = fileName;
     return this;
   }
+
+  /**
+   * Sets the header block to emit for this part, as produced by {@link
+   * MultipartForm#encodeHeaders(Part)}. The caller is responsible for keeping it consistent with the
+   * name, file name, content type and transfer encoding of the part.
+   */
+  public Part withEncodedHeaders(byte[] encodedHeaders) {
+    this.encodedHeaders = encodedHeaders;
+    return this;
+  }
 }
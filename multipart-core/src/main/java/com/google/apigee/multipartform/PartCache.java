@@ -0,0 +1,124 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, size-aware cache of encoded parts: the header block and the body, ready to be
+ * streamed into a form. Entries are evicted least-recently-used first when the total size exceeds
+ * the limit. An entry larger than a quarter of the limit is not cached at all, so that one large
+ * part cannot flush everything else.
+ *
+ * <p>Cached arrays are shared by every form that uses them, and must not be modified.
+ */
+public class PartCache {
+  private static final PartCache shared =
+      new PartCache(Long.getLong("mpf.part-cache.max-bytes", 16L * 1024 * 1024));
+
+  public static final class Entry {
+    private final byte[] headers;
+    private final byte[] body;
+
+    public Entry(byte[] headers, byte[] body) {
+      this.headers = headers;
+      this.body = body;
+    }
+
+    public byte[] getHeaders() {
+      return headers;
+    }
+
+    public byte[] getBody() {
+      return body;
+    }
+
+    long size() {
+      return (long) headers.length + body.length;
+    }
+  }
+
+  private final long maxBytes;
+  private final LinkedHashMap<String, Entry> entries =
+      new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private long totalBytes;
+  private long hits;
+  private long misses;
+
+  public PartCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /** The cache shared by all callouts in this JVM. */
+  public static PartCache shared() {
+    return shared;
+  }
+
+  public synchronized Entry get(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return entry;
+  }
+
+  /** Adds the entry, evicting others as necessary. Returns false if it is too large to cache. */
+  public synchronized boolean put(String key, Entry entry) {
+    if (entry.size() > maxBytes / 4) {
+      return false;
+    }
+    Entry previous = entries.put(key, entry);
+    if (previous != null) {
+      totalBytes -= previous.size();
+    }
+    totalBytes += entry.size();
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (totalBytes > maxBytes && it.hasNext()) {
+      Map.Entry<String, Entry> eldest = it.next();
+      if (eldest.getValue() != entry) {
+        totalBytes -= eldest.getValue().size();
+        it.remove();
+      }
+    }
+    return true;
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    totalBytes = 0;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long totalBytes() {
+    return totalBytes;
+  }
+
+  public synchronized long hits() {
+    return hits;
+  }
+
+  public synchronized long misses() {
+    return misses;
+  }
+}
@@ -0,0 +1,188 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import com.google.apigee.stream.ConcatenatedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * The content of a Part. It may be held in a byte array, or it may be a source that is opened only
+ * when the form is streamed out, so that large content need not be copied into the form.
+ */
+public abstract class PartContent {
+
+  /** The length in bytes, or -1 if it is not known until the content is read. */
+  public abstract long length();
+
+  /**
+   * Opens a stream over the content. Each call returns a new stream, except for content made with
+   * {@link #once}, which can be opened only one time.
+   */
+  public abstract InputStream openStream() throws IOException;
+
+  /**
+   * Discards content that will not be opened. Only content made with {@link #once} holds a stream
+   * until it is opened; it closes the stream.
+   */
+  public void discard() throws IOException {}
+
+  /** Returns the content as a source of a ConcatenatedInputStream, released if never reached. */
+  public ConcatenatedInputStream.Source asSource() {
+    return new ConcatenatedInputStream.Source() {
+      public InputStream open() throws IOException {
+        return openStream();
+      }
+
+      @Override
+      public void release() throws IOException {
+        PartContent.this.discard();
+      }
+    };
+  }
+
+  /** Returns the content as a byte array. This may copy, or read the whole source. */
+  public byte[] toByteArray() throws IOException {
+    try (InputStream in = openStream()) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[8192];
+      int n;
+      while ((n = in.read(buf, 0, buf.length)) != -1) {
+        out.write(buf, 0, n);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  public static PartContent of(byte[] bytes) {
+    return new Bytes(bytes, 0, bytes.length);
+  }
+
+  /** Content that is a slice of a larger array. The array is shared, not copied. */
+  public static PartContent of(byte[] bytes, int offset, int length) {
+    return new Bytes(bytes, offset, length);
+  }
+
+  /**
+   * Content that is read from the given source only when the form is streamed out.
+   *
+   * @param length the length of the content, or -1 if unknown.
+   */
+  public static PartContent lazy(Supplier<InputStream> source, long length) {
+    return new Lazy(source, length);
+  }
+
+  /**
+   * Content that is read from the given stream only when the form is streamed out. The stream can
+   * be read only once, so a second call to openStream fails rather than returning a stream that
+   * has already been consumed.
+   *
+   * @param length the length of the content, or -1 if unknown.
+   */
+  public static PartContent once(InputStream in, long length) {
+    return new Once(in, length);
+  }
+
+  static final class Bytes extends PartContent {
+    final byte[] bytes;
+    final int offset;
+    final int length;
+
+    Bytes(byte[] bytes, int offset, int length) {
+      this.bytes = bytes;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    public long length() {
+      return length;
+    }
+
+    public InputStream openStream() {
+      return new ByteArrayInputStream(bytes, offset, length);
+    }
+
+    @Override
+    public byte[] toByteArray() {
+      if (offset == 0 && length == bytes.length) {
+        return bytes;
+      }
+      return Arrays.copyOfRange(bytes, offset, offset + length);
+    }
+  }
+
+  static final class Lazy extends PartContent {
+    private final Supplier<InputStream> source;
+    private final long length;
+
+    Lazy(Supplier<InputStream> source, long length) {
+      this.source = source;
+      this.length = length;
+    }
+
+    public long length() {
+      return length;
+    }
+
+    public InputStream openStream() throws IOException {
+      InputStream in = source.get();
+      if (in == null) {
+        throw new IOException("content source is empty");
+      }
+      return in;
+    }
+  }
+
+  static final class Once extends PartContent {
+    private final long length;
+    private InputStream in;
+
+    Once(InputStream in, long length) {
+      this.in = in;
+      this.length = length;
+    }
+
+    public long length() {
+      return length;
+    }
+
+    public synchronized InputStream openStream() throws IOException {
+      if (in == null) {
+        throw new IOException("content stream has already been opened");
+      }
+      InputStream result = in;
+      in = null;
+      return result;
+    }
+
+    @Override
+    public void discard() throws IOException {
+      InputStream unopened;
+      synchronized (this) {
+        unopened = in;
+        in = null;
+      }
+      if (unopened != null) {
+        unopened.close();
+      }
+    }
+  }
+}
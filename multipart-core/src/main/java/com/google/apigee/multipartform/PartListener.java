@@ -0,0 +1,39 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the events emitted by a {@link MultipartParser}. For each part, the parser calls
+ * onPartStart, then onHeader once per header line, then onBodyChunk zero or more times, then
+ * onPartEnd.
+ */
+public interface PartListener {
+  void onPartStart();
+
+  void onHeader(String name, String value);
+
+  /**
+   * Receives the next slice of the body of the current part. The bytes between the position and
+   * the limit of the buffer belong to the body. The buffer is only valid for the duration of the
+   * call; implementations that want to retain the data must copy it.
+   */
+  void onBodyChunk(ByteBuffer chunk);
+
+  void onPartEnd();
+}
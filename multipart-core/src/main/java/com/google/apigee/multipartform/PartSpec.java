@@ -0,0 +1,106 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+/** The description of one part of a form to be created, as read from a form descriptor. */
+public class PartSpec {
+  private final String name;
+  private String contentVar;
+  private String contentMessage;
+  private String contentResource;
+  private String contentType;
+  private String fileName;
+  private String transferEncoding;
+  private boolean wantBase64Decode;
+  private Boolean cacheable;
+
+  public PartSpec(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getContentVar() {
+    return contentVar;
+  }
+
+  public void setContentVar(String value) {
+    this.contentVar = value;
+  }
+
+  public String getContentMessage() {
+    return contentMessage;
+  }
+
+  public void setContentMessage(String value) {
+    this.contentMessage = value;
+  }
+
+  public String getContentResource() {
+    return contentResource;
+  }
+
+  public void setContentResource(String value) {
+    this.contentResource = value;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public void setContentType(String value) {
+    this.contentType = value;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public void setFileName(String value) {
+    this.fileName = value;
+  }
+
+  public String getTransferEncoding() {
+    return transferEncoding;
+  }
+
+  public void setTransferEncoding(String value) {
+    this.transferEncoding = value;
+  }
+
+  public boolean getWantBase64Decode() {
+    return wantBase64Decode;
+  }
+
+  public void setWantBase64Decode(boolean value) {
+    this.wantBase64Decode = value;
+  }
+
+  /**
+   * Whether the encoded part may be cached and reused across requests. Parts from a resource are
+   * cacheable unless the descriptor says otherwise; parts from a variable only if it says so.
+   */
+  public boolean isCacheable() {
+    return (cacheable != null) ? cacheable : (contentResource != null);
+  }
+
+  public void setCacheable(boolean value) {
+    this.cacheable = value;
+  }
+}
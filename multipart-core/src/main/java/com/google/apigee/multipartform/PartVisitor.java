@@ -0,0 +1,41 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Inspects the body of each part while the form is being parsed, in the same pass that extracts
+ * it. Implementations must have a public no-argument constructor so that they can be named by class
+ * in the configuration of the parser. One instance is used for all the parts of one form, from a
+ * single thread.
+ */
+public interface PartVisitor {
+  /** A short name for the result, eg "sha256". It becomes part of the output variable name. */
+  String getName();
+
+  void startPart();
+
+  /**
+   * Receives the next slice of the body of the current part. Implementations must not change the
+   * position or limit of the buffer, which is shared with other visitors.
+   */
+  void visit(ByteBuffer chunk);
+
+  /** Returns the result for the part that just ended, as a string. */
+  String endPart();
+}
@@ -0,0 +1,243 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Checksum;
+
+/** Factory for the built-in {@link PartVisitor}s, and for visitors named by class. */
+public class PartVisitors {
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+  private static final int SCRATCH_SIZE = 8192;
+
+  // java.util.zip.CRC32C exists, and is intrinsified, only in Java 9 and later.
+  private static final Constructor<?> platformCrc32c = findPlatformCrc32c();
+
+  private PartVisitors() {}
+
+  /**
+   * Creates visitors from a comma-separated list. Each item is one of sha256, sha1, md5, crc32c,
+   * bytes, or the fully-qualified name of a class that implements PartVisitor.
+   */
+  public static List<PartVisitor> create(String spec) {
+    List<PartVisitor> visitors = new ArrayList<PartVisitor>();
+    if (spec == null) {
+      return visitors;
+    }
+    for (String item : spec.split(",")) {
+      item = item.trim();
+      if (!item.isEmpty()) {
+        visitors.add(forName(item));
+      }
+    }
+    return visitors;
+  }
+
+  public static PartVisitor forName(String name) {
+    switch (name.toLowerCase()) {
+      case "sha256":
+      case "sha-256":
+        return new DigestVisitor("sha256", "SHA-256");
+      case "sha1":
+      case "sha-1":
+        return new DigestVisitor("sha1", "SHA-1");
+      case "md5":
+        return new DigestVisitor("md5", "MD5");
+      case "crc32c":
+        return new Crc32cVisitor();
+      case "bytes":
+        return new ByteCountVisitor();
+      default:
+        return instantiate(name);
+    }
+  }
+
+  private static PartVisitor instantiate(String className) {
+    try {
+      Class<?> c = Class.forName(className);
+      if (!PartVisitor.class.isAssignableFrom(c)) {
+        throw new FormException(
+            FormException.UNSUPPORTED_VISITOR,
+            String.format("%s does not implement PartVisitor", className));
+      }
+      return (PartVisitor) c.getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new FormException(
+          FormException.UNSUPPORTED_VISITOR, String.format("unknown part visitor: %s", className));
+    }
+  }
+
+  static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+      chars[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+    }
+    return new String(chars);
+  }
+
+  private static Constructor<?> findPlatformCrc32c() {
+    try {
+      return Class.forName("java.util.zip.CRC32C").getConstructor();
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  static Checksum newCrc32c() {
+    if (platformCrc32c != null) {
+      try {
+        return (Checksum) platformCrc32c.newInstance();
+      } catch (ReflectiveOperationException e) {
+        // fall through
+      }
+    }
+    return new Crc32c();
+  }
+
+
+  static class DigestVisitor implements PartVisitor {
+    private final String name;
+    private final MessageDigest digest;
+
+    DigestVisitor(String name, String algorithm) {
+      this.name = name;
+      try {
+        this.digest = MessageDigest.getInstance(algorithm);
+      } catch (NoSuchAlgorithmException e) {
+        throw new FormException(
+            FormException.UNSUPPORTED_VISITOR, String.format("unsupported digest: %s", algorithm));
+      }
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void startPart() {
+      digest.reset();
+    }
+
+    public void visit(ByteBuffer chunk) {
+      if (chunk.hasArray()) {
+        digest.update(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+      } else {
+        digest.update(chunk.duplicate());
+      }
+    }
+
+    public String endPart() {
+      return toHex(digest.digest());
+    }
+  }
+
+  static class Crc32cVisitor implements PartVisitor {
+    private final Checksum checksum = newCrc32c();
+    private byte[] scratch; // for chunks without an accessible array, such as direct buffers
+
+    public String getName() {
+      return "crc32c";
+    }
+
+    public void startPart() {
+      checksum.reset();
+    }
+
+    public void visit(ByteBuffer chunk) {
+      if (chunk.hasArray()) {
+        checksum.update(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+        return;
+      }
+      // Checksum has no update(ByteBuffer) on Java 8; copy in blocks, not byte by byte
+      if (scratch == null) {
+        scratch = new byte[SCRATCH_SIZE];
+      }
+      ByteBuffer b = chunk.duplicate();
+      while (b.hasRemaining()) {
+        int n = Math.min(b.remaining(), scratch.length);
+        b.get(scratch, 0, n);
+        checksum.update(scratch, 0, n);
+      }
+    }
+
+    public String endPart() {
+      return String.format("%08x", checksum.getValue());
+    }
+  }
+
+  static class ByteCountVisitor implements PartVisitor {
+    private long count;
+
+    public String getName() {
+      return "bytes";
+    }
+
+    public void startPart() {
+      count = 0;
+    }
+
+    public void visit(ByteBuffer chunk) {
+      count += chunk.remaining();
+    }
+
+    public String endPart() {
+      return Long.toString(count);
+    }
+  }
+
+  /** Table-driven CRC-32C (Castagnoli), for runtimes that lack java.util.zip.CRC32C. */
+  static class Crc32c implements Checksum {
+    private static final int[] TABLE = new int[256];
+
+    static {
+      for (int n = 0; n < 256; n++) {
+        int c = n;
+        for (int k = 0; k < 8; k++) {
+          c = ((c & 1) != 0) ? (c >>> 1) ^ 0x82F63B78 : c >>> 1;
+        }
+        TABLE[n] = c;
+      }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    public void update(int b) {
+      crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xff];
+    }
+
+    public void update(byte[] b, int off, int len) {
+      int c = crc;
+      for (int i = off, end = off + len; i < end; i++) {
+        c = (c >>> 8) ^ TABLE[(c ^ b[i]) & 0xff];
+      }
+      crc = c;
+    }
+
+    public long getValue() {
+      return (~crc) & 0xFFFFFFFFL;
+    }
+
+    public void reset() {
+      crc = 0xFFFFFFFF;
+    }
+  }
+}
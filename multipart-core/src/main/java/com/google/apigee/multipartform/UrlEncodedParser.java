@@ -0,0 +1,209 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An incremental, push-style parser for application/x-www-form-urlencoded content. Like {@link
+ * MultipartParser}, it takes the content in chunks of any size, and emits each field to a {@link
+ * FieldListener} as it arrives. It decodes percent-escapes and '+' directly from the bytes as
+ * they arrive, into reusable buffers, and copies runs of plain bytes in bulk; an escape may be
+ * split across chunks. Names are decoded as UTF-8. Values are passed on as bytes, in chunks of at
+ * most VALUE_CHUNK_SIZE, and are never held whole, so that the memory the parser uses does not
+ * depend on the length of a value; a listener that wants the whole value accumulates it.
+ *
+ * <p>A field without '=' has an empty value. Empty fields, as between "&&", are skipped. A '%'
+ * that is not followed by two hex digits is an error, as it is for URLDecoder.
+ *
+ * <p>This class is not thread safe. Use one instance per form.
+ */
+public class UrlEncodedParser {
+  public static final int MAX_NAME_LENGTH = 8192;
+  public static final int VALUE_CHUNK_SIZE = 8192;
+  private static final boolean[] special = new boolean[256];
+
+  static {
+    special['&'] = true;
+    special['='] = true;
+    special['+'] = true;
+    special['%'] = true;
+  }
+
+  private final FieldListener listener;
+  private byte[] name = new byte[64];
+  private int nameLength;
+  private final byte[] value = new byte[VALUE_CHUNK_SIZE];
+  private final ByteBuffer valueView = ByteBuffer.wrap(value);
+  private int valueLength;
+  private boolean inValue;
+  private int pendingDigits; // hex digits still expected after a '%'
+  private int highDigit;
+  private long position;
+  private int fieldCount;
+
+  public UrlEncodedParser(FieldListener listener) {
+    this.listener = listener;
+  }
+
+  /** The total number of bytes fed to this parser so far. */
+  public long getPosition() {
+    return position;
+  }
+
+  /** The number of fields ended so far. */
+  public int getFieldCount() {
+    return fieldCount;
+  }
+
+  public void feed(byte[] data, int offset, int length) {
+    int end = offset + length;
+    int i = offset;
+    while (i < end) {
+      if (pendingDigits > 0) {
+        int digit = Character.digit(data[i++], 16);
+        if (digit < 0) {
+          throw new FormException(
+              FormException.INVALID_ESCAPE, "invalid percent-escape in form content");
+        }
+        if (pendingDigits == 2) {
+          highDigit = digit;
+          pendingDigits = 1;
+        } else {
+          append((byte) ((highDigit << 4) | digit));
+          pendingDigits = 0;
+        }
+        continue;
+      }
+      byte b = data[i];
+      if (!special[b & 0xff]) {
+        int run = i + 1;
+        while (run < end && !special[data[run] & 0xff]) {
+          run++;
+        }
+        append(data, i, run - i);
+        i = run;
+        continue;
+      }
+      i++;
+      switch (b) {
+        case '&':
+          endField();
+          break;
+        case '=':
+          if (inValue) {
+            append(b);
+          } else {
+            startField();
+          }
+          break;
+        case '+':
+          append((byte) ' ');
+          break;
+        default:
+          pendingDigits = 2;
+      }
+    }
+    position += length;
+  }
+
+  /**
+   * Signals the end of the content, and emits the last field.
+   *
+   * @throws FormException if the content ended within a percent-escape.
+   */
+  public void finish() {
+    endField();
+  }
+
+  // The name is complete: at the '=', or, for a field without one, at its end.
+  private void startField() {
+    inValue = true;
+    listener.onFieldStart(new String(name, 0, nameLength, StandardCharsets.UTF_8));
+    nameLength = 0;
+  }
+
+  private void endField() {
+    if (pendingDigits > 0) {
+      throw new FormException(
+          FormException.INVALID_ESCAPE, "invalid percent-escape in form content");
+    }
+    if (!inValue) {
+      if (nameLength == 0) {
+        return;
+      }
+      startField();
+    }
+    flushValue();
+    inValue = false;
+    fieldCount++;
+    listener.onFieldEnd();
+  }
+
+  private void flushValue() {
+    if (valueLength > 0) {
+      valueView.clear();
+      valueView.limit(valueLength);
+      valueLength = 0;
+      listener.onValueChunk(valueView);
+    }
+  }
+
+  private void append(byte b) {
+    if (inValue) {
+      if (valueLength == value.length) {
+        flushValue();
+      }
+      value[valueLength++] = b;
+    } else {
+      ensureNameCapacity(1);
+      name[nameLength++] = b;
+    }
+  }
+
+  private void append(byte[] data, int offset, int length) {
+    if (inValue) {
+      while (length > 0) {
+        if (valueLength == value.length) {
+          flushValue();
+        }
+        int n = Math.min(length, value.length - valueLength);
+        System.arraycopy(data, offset, value, valueLength, n);
+        valueLength += n;
+        offset += n;
+        length -= n;
+      }
+    } else {
+      ensureNameCapacity(length);
+      System.arraycopy(data, offset, name, nameLength, length);
+      nameLength += length;
+    }
+  }
+
+  private void ensureNameCapacity(int length) {
+    if (nameLength + length > name.length) {
+      if (nameLength + length > MAX_NAME_LENGTH) {
+        throw new FormException(
+            FormException.FIELD_NAME_TOO_LONG, "form field name exceeds maximum length");
+      }
+      int capacity = Math.max(name.length * 2, nameLength + length);
+      name = Arrays.copyOf(name, Math.min(capacity, MAX_NAME_LENGTH));
+    }
+  }
+}
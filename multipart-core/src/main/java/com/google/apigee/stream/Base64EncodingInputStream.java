@@ -0,0 +1,116 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.stream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * An InputStream that base64-encodes the bytes read from the wrapped stream. This is the read-side
+ * counterpart of {@link Base64.Encoder#wrap(java.io.OutputStream)}: it encodes a block at a time,
+ * so the encoded form is never held in memory as a whole.
+ */
+public class Base64EncodingInputStream extends FilterInputStream {
+  // a multiple of 3, so that only the final block is padded
+  private static final int BLOCK_SIZE = 3 * 1024;
+
+  private final Base64.Encoder encoder;
+  private final byte[] block = new byte[BLOCK_SIZE];
+  private final byte[] encoded = new byte[BLOCK_SIZE / 3 * 4];
+  private int encodedPosition;
+  private int encodedLimit;
+  private boolean eof;
+
+  public Base64EncodingInputStream(InputStream in, Base64.Encoder encoder) {
+    super(in);
+    this.encoder = encoder;
+  }
+
+  /** The length of the encoding of n bytes, including padding. */
+  public static long encodedLength(long n) {
+    return (n < 0) ? -1 : (n + 2) / 3 * 4;
+  }
+
+  private boolean fill() throws IOException {
+    while (encodedPosition == encodedLimit) {
+      if (eof) {
+        return false;
+      }
+      int filled = 0;
+      while (filled < block.length) {
+        int n = in.read(block, filled, block.length - filled);
+        if (n == -1) {
+          eof = true;
+          break;
+        }
+        filled += n;
+      }
+      encodedPosition = 0;
+      encodedLimit =
+          (filled == block.length)
+              ? encoder.encode(block, encoded)
+              : encoder.encode(Arrays.copyOf(block, filled), encoded);
+    }
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!fill()) {
+      return -1;
+    }
+    return encoded[encodedPosition++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!fill()) {
+      return -1;
+    }
+    int n = Math.min(len, encodedLimit - encodedPosition);
+    System.arraycopy(encoded, encodedPosition, b, off, n);
+    encodedPosition += n;
+    return n;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = 0;
+    while (skipped < n && fill()) {
+      int k = (int) Math.min(n - skipped, encodedLimit - encodedPosition);
+      encodedPosition += k;
+      skipped += k;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return encodedLimit - encodedPosition;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+}
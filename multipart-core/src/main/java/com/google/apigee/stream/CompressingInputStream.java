@@ -0,0 +1,131 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.stream;
+
+import com.google.apigee.multipartform.FormException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+
+/**
+ * Compresses a stream with gzip or deflate as it is read. The JDK offers only OutputStreams for
+ * gzip; this class produces the gzip framing itself, so that compression can be pulled through an
+ * InputStream pipeline without buffering the uncompressed content.
+ */
+public class CompressingInputStream extends InputStream {
+  private static final int BUFFER_SIZE = 8192;
+  private static final byte[] GZIP_HEADER = {
+    0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+  };
+  private static final byte[] NONE = new byte[0];
+
+  private final Deflater deflater;
+  private final CheckedInputStream checked;
+  private final DeflaterInputStream body;
+  private final boolean gzip;
+  private byte[] framing;
+  private int framingPos;
+  private boolean bodyDone;
+
+  private CompressingInputStream(InputStream in, boolean gzip, int level) {
+    this.gzip = gzip;
+    this.deflater = new Deflater(level, gzip);
+    this.checked = new CheckedInputStream(in, new CRC32());
+    this.body = new DeflaterInputStream(checked, deflater, BUFFER_SIZE);
+    this.framing = gzip ? GZIP_HEADER : NONE;
+  }
+
+  /**
+   * Wraps the given stream to apply the given content-encoding, either "gzip" or "deflate".
+   *
+   * @param level the compression level, 0-9, or -1 for the default.
+   * @throws FormException if the encoding or level is not supported.
+   */
+  public static InputStream forEncoding(InputStream in, String contentEncoding, int level) {
+    if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new FormException(
+          FormException.INVALID_COMPRESSION_LEVEL,
+          String.format("unsupported compression level: %d", level));
+    }
+    String encoding = contentEncoding.trim().toLowerCase();
+    if (encoding.equals("gzip")) {
+      return new CompressingInputStream(in, true, level);
+    }
+    if (encoding.equals("deflate")) {
+      return new CompressingInputStream(in, false, level);
+    }
+    throw new FormException(
+        FormException.UNSUPPORTED_ENCODING,
+        String.format("unsupported content-encoding: %s", encoding));
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] b = new byte[1];
+    int n = read(b, 0, 1);
+    return (n == -1) ? -1 : (b[0] & 0xff);
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    for (; ; ) {
+      if (framingPos < framing.length) {
+        int n = Math.min(len, framing.length - framingPos);
+        System.arraycopy(framing, framingPos, b, off, n);
+        framingPos += n;
+        return n;
+      }
+      if (bodyDone) {
+        return -1;
+      }
+      int n = body.read(b, off, len);
+      if (n != -1) {
+        return n;
+      }
+      bodyDone = true;
+      framing = gzip ? trailer() : NONE;
+      framingPos = 0;
+    }
+  }
+
+  // CRC-32 and length of the uncompressed data, both little-endian
+  private byte[] trailer() {
+    long crc = checked.getChecksum().getValue();
+    long size = deflater.getBytesRead();
+    byte[] t = new byte[8];
+    for (int i = 0; i < 4; i++) {
+      t[i] = (byte) (crc >>> (8 * i));
+      t[4 + i] = (byte) (size >>> (8 * i));
+    }
+    return t;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      body.close();
+    } finally {
+      deflater.end();
+    }
+  }
+}
@@ -0,0 +1,132 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Reads a sequence of sources one after the other, as one stream. Unlike SequenceInputStream, each
+ * source is opened only when the reader reaches it, and may fail with an IOException when opened.
+ * Closing the stream closes the source being read, and releases the sources not yet reached.
+ */
+public class ConcatenatedInputStream extends InputStream {
+
+  /** Opens one segment of the concatenated stream. */
+  public interface Source {
+    InputStream open() throws IOException;
+
+    /**
+     * Releases a source that is never opened, because the stream is closed before the reader
+     * reaches it. A source that holds a stream, rather than opening one, closes it here.
+     */
+    default void release() throws IOException {}
+  }
+
+  private final List<? extends Source> sources;
+  private int next;
+  private InputStream current;
+  private boolean closed;
+
+  public ConcatenatedInputStream(List<? extends Source> sources) {
+    this.sources = sources;
+  }
+
+  // Returns the stream to read from, or null at the end.
+  private InputStream current() throws IOException {
+    if (current == null && !closed && next < sources.size()) {
+      current = sources.get(next++).open();
+    }
+    return current;
+  }
+
+  private void advance() throws IOException {
+    try {
+      current.close();
+    } finally {
+      current = null;
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    InputStream in;
+    while ((in = current()) != null) {
+      int b = in.read();
+      if (b != -1) {
+        return b;
+      }
+      advance();
+    }
+    return -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    InputStream in;
+    while ((in = current()) != null) {
+      int n = in.read(b, off, len);
+      if (n > 0) {
+        return n;
+      }
+      if (n == -1) {
+        advance();
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return (current != null) ? current.available() : 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    IOException failure = null;
+    try {
+      if (current != null) {
+        advance();
+      }
+    } catch (IOException e) {
+      failure = e;
+    }
+    // release every source the reader did not reach, even if one of them fails
+    while (next < sources.size()) {
+      try {
+        sources.get(next++).release();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
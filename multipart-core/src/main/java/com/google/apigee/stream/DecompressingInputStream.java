@@ -0,0 +1,160 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.stream;
+
+import com.google.apigee.multipartform.FormException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Inflates a gzip or deflate encoded stream as it is read, and fails once the number of inflated
+ * bytes exceeds a fixed multiple of the compressed bytes consumed. The check guards against
+ * "zip bombs": small payloads that expand to exhaust memory.
+ */
+public class DecompressingInputStream extends FilterInputStream {
+  private static final int BUFFER_SIZE = 8192;
+  private final CountingInputStream compressed;
+  private final Inflater inflater;
+  private final int maxRatio;
+  private long inflated;
+
+  private DecompressingInputStream(
+      InputStream inflating, CountingInputStream compressed, Inflater inflater, int maxRatio) {
+    super(inflating);
+    this.compressed = compressed;
+    this.inflater = inflater;
+    this.maxRatio = maxRatio;
+  }
+
+  /**
+   * Wraps the given stream to undo the given content-encoding. Returns the stream unchanged when the
+   * encoding is null, empty or "identity". A list of encodings, as in "deflate, gzip", is undone in
+   * reverse order.
+   *
+   * @throws FormException if an encoding is not supported.
+   */
+  public static InputStream forEncoding(InputStream in, String contentEncoding, int maxRatio)
+      throws IOException {
+    if (contentEncoding == null) {
+      return in;
+    }
+    String[] encodings = contentEncoding.split(",");
+    for (int i = encodings.length - 1; i >= 0; i--) {
+      String encoding = encodings[i].trim().toLowerCase();
+      if (encoding.isEmpty() || encoding.equals("identity")) {
+        continue;
+      }
+      CountingInputStream counter = new CountingInputStream(in);
+      if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+        in =
+            new DecompressingInputStream(
+                new GZIPInputStream(counter, BUFFER_SIZE), counter, null, maxRatio);
+      } else if (encoding.equals("deflate")) {
+        PushbackInputStream pushback = new PushbackInputStream(counter, 2);
+        Inflater inflater = new Inflater(!isZlibWrapped(pushback));
+        in =
+            new DecompressingInputStream(
+                new InflaterInputStream(pushback, inflater, BUFFER_SIZE),
+                counter,
+                inflater,
+                maxRatio);
+      } else {
+        throw new FormException(
+            FormException.UNSUPPORTED_ENCODING,
+            String.format("unsupported content-encoding: %s", encoding));
+      }
+    }
+    return in;
+  }
+
+  // "deflate" should mean zlib-wrapped data (RFC 9110), but some clients send raw deflate. Peek at
+  // the first two bytes to tell them apart.
+  private static boolean isZlibWrapped(PushbackInputStream pushback) throws IOException {
+    byte[] header = new byte[2];
+    int n = 0;
+    while (n < 2) {
+      int r = pushback.read(header, n, 2 - n);
+      if (r == -1) {
+        break;
+      }
+      n += r;
+    }
+    if (n > 0) {
+      pushback.unread(header, 0, n);
+    }
+    return n == 2
+        && (header[0] & 0x0f) == 8
+        && (((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0;
+  }
+
+  private void check() {
+    if (inflated > (long) maxRatio * Math.max(compressed.getCount(), 1)) {
+      throw new FormException(
+          FormException.DECOMPRESSION_LIMIT,
+          String.format("decompression ratio exceeds limit (%d)", maxRatio));
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = in.read();
+    if (b != -1) {
+      inflated++;
+      check();
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int n = in.read(b, off, len);
+    if (n > 0) {
+      inflated += n;
+      check();
+    }
+    return n;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = in.skip(n);
+    inflated += skipped;
+    check();
+    return skipped;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      super.close();
+    } finally {
+      if (inflater != null) {
+        inflater.end();
+      }
+    }
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+}
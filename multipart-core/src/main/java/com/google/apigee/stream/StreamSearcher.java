@@ -52,13 +52,20 @@ public class StreamSearcher {
     return -1;
   }
 
+  // exposes the internal buffer, so that the extracted range is copied once, not twice
+  private static class ExtractBuffer extends ByteArrayOutputStream {
+    byte[] copyOfRange(int from, int to) {
+      return Arrays.copyOfRange(buf, from, to);
+    }
+  }
+
   public byte[] searchAndExtract(InputStream stream) throws IOException {
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ExtractBuffer buffer = new ExtractBuffer();
     int b;
     int j = 0;
 
     while ((b = stream.read()) != -1) {
-      baos.write(b);
+      buffer.write(b);
 
       while (j >= 0 && (byte) b != pattern[j]) {
         j = borders[j];
@@ -68,10 +75,9 @@ public class StreamSearcher {
 
       // Found.
       if (j == pattern.length) {
-        byte[] a = baos.toByteArray();
         // Return the bytes for this part, without the separator, and without
         // the preceding CRLF and the following CRLF.
-        return Arrays.copyOfRange(a, 2, a.length - pattern.length - 2);
+        return buffer.copyOfRange(2, buffer.size() - pattern.length - 2);
       }
     }
     return null;
@@ -0,0 +1,64 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Finds the next occurrence of a byte in an array, eight bytes at a time. This is the Java 21
+ * variant of the class, packaged under META-INF/versions/21 in the multi-release jar; it must
+ * return the same results as the portable loop in src/main/java.
+ *
+ * <p>Each 8-byte word, aligned or not, is read in little-endian order and XORed with the target
+ * byte repeated eight times, so that matching bytes become zero. The usual SWAR test, {@code
+ * (x - 0x01..) & ~x & 0x80..}, then sets the high bit of the lowest zero byte. A borrow can flag
+ * higher bytes spuriously, but never a lower one, so the number of trailing zeros locates the
+ * first match exactly.
+ */
+final class ByteScanner {
+  private static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final long ONES = 0x0101010101010101L;
+  private static final long HIGHS = 0x8080808080808080L;
+
+  private ByteScanner() {}
+
+  /**
+   * Returns the index of the first occurrence of {@code b} in {@code data[from, to)}, or {@code
+   * to} if there is none.
+   */
+  static int indexOf(byte[] data, int from, int to, byte b) {
+    int i = from;
+    if (to - i >= Long.BYTES) {
+      long pattern = (b & 0xFFL) * ONES;
+      int last = to - Long.BYTES;
+      for (; i <= last; i += Long.BYTES) {
+        long x = (long) LONGS.get(data, i) ^ pattern;
+        long found = (x - ONES) & ~x & HIGHS;
+        if (found != 0) {
+          return i + (Long.numberOfTrailingZeros(found) >>> 3);
+        }
+      }
+    }
+    while (i < to && data[i] != b) {
+      i++;
+    }
+    return i;
+  }
+}
@@ -0,0 +1,107 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.json;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestJavaxJson {
+
+  public static class Sample {
+    private String name;
+    private int count;
+    private double ratio;
+    private boolean flag;
+    private Date when;
+    private List<String> tags;
+
+    public void setName(String value) {
+      this.name = value;
+    }
+
+    public void setCount(int value) {
+      this.count = value;
+    }
+
+    public void setRatio(double value) {
+      this.ratio = value;
+    }
+
+    public void setFlag(boolean value) {
+      this.flag = value;
+    }
+
+    public void setWhen(Date value) {
+      this.when = value;
+    }
+
+    public void setTags(List<String> value) {
+      this.tags = value;
+    }
+  }
+
+  @Test
+  public void decode_Bean() throws Exception {
+    String json =
+        "{ \"name\": \"a\", \"count\": 3, \"ratio\": 0.5, \"flag\": true,"
+            + " \"when\": \"Jan 02, 2023 3:04:05 PM\", \"tags\": [\"x\", \"y\"], \"extra\": 1 }";
+    for (int i = 0; i < 2; i++) {
+      Sample sample = JavaxJson.fromJson(json, Sample.class);
+      Assert.assertEquals(sample.name, "a");
+      Assert.assertEquals(sample.count, 3);
+      Assert.assertEquals(sample.ratio, 0.5);
+      Assert.assertTrue(sample.flag);
+      Assert.assertNotNull(sample.when);
+      Assert.assertEquals(sample.tags.size(), 2);
+      Assert.assertEquals(sample.tags.get(1), "y");
+    }
+  }
+
+  public static class Guarded {
+    private String name;
+    private String secret;
+
+    public void setName(String value) {
+      this.name = value;
+    }
+
+    private void setSecret(String value) {
+      this.secret = value;
+    }
+  }
+
+  @Test
+  public void decode_BindsOnlyPublicSetters() throws Exception {
+    Guarded guarded =
+        JavaxJson.fromJson("{ \"name\": \"a\", \"secret\": \"b\" }", Guarded.class);
+    Assert.assertEquals(guarded.name, "a");
+    Assert.assertNull(guarded.secret, "secret");
+  }
+
+  @Test
+  public void decode_Map() throws Exception {
+    @SuppressWarnings("unchecked")
+    Map<String, Object> map = JavaxJson.fromJson("{ \"a\": { \"b\": false, \"n\": 2 } }", Map.class);
+    @SuppressWarnings("unchecked")
+    Map<String, Object> inner = (Map<String, Object>) map.get("a");
+    Assert.assertEquals(inner.get("b"), Boolean.FALSE);
+    Assert.assertEquals(inner.get("n"), 2.0d);
+  }
+}
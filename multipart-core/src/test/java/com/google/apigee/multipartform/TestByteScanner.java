@@ -0,0 +1,62 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.util.Random;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestByteScanner {
+
+  private static int naiveIndexOf(byte[] data, int from, int to, byte b) {
+    for (int i = from; i < to; i++) {
+      if (data[i] == b) {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  @Test
+  public void indexOf_AgreesWithLoop() throws Exception {
+    Random random = new Random(42);
+    // a small alphabet, so that matches are frequent, and bytes with the high bit set
+    byte[] alphabet = {'\r', '\n', '-', 'a', 0, (byte) 0x80, (byte) 0x8D, (byte) 0xFF};
+    for (int trial = 0; trial < 2000; trial++) {
+      byte[] data = new byte[random.nextInt(80)];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      int from = data.length == 0 ? 0 : random.nextInt(data.length);
+      int to = from + random.nextInt(data.length - from + 1);
+      byte b = alphabet[random.nextInt(alphabet.length)];
+      Assert.assertEquals(
+          ByteScanner.indexOf(data, from, to, b),
+          naiveIndexOf(data, from, to, b),
+          String.format("trial %d, from %d, to %d", trial, from, to));
+    }
+  }
+
+  @Test
+  public void indexOf_NotFound() throws Exception {
+    byte[] data = new byte[100];
+    Assert.assertEquals(ByteScanner.indexOf(data, 3, 97, (byte) '\r'), 97);
+    data[98] = '\r';
+    Assert.assertEquals(ByteScanner.indexOf(data, 3, 97, (byte) '\r'), 97, "beyond the range");
+    Assert.assertEquals(ByteScanner.indexOf(data, 3, 100, (byte) '\r'), 98);
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestDirectContentStore {
+
+  private static byte[] readAll(InputStream is) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    byte[] data = new byte[1000];
+    int n;
+    while ((n = is.read(data, 0, data.length)) != -1) {
+      os.write(data, 0, n);
+    }
+    return os.toByteArray();
+  }
+
+  private static PartContent store(ContentStore store, byte[] body, int chunkSize) {
+    ContentStore.Sink sink = store.newSink();
+    for (int offset = 0; offset < body.length; offset += chunkSize) {
+      ByteBuffer chunk = ByteBuffer.wrap(body, offset, Math.min(chunkSize, body.length - offset));
+      int position = chunk.position();
+      sink.write(chunk);
+      Assert.assertEquals(chunk.position(), position, "the sink must not move the chunk");
+    }
+    return sink.finish();
+  }
+
+  @Test
+  public void storeAndRead_SpanningSegments() throws Exception {
+    byte[] body = new byte[DirectContentStore.SEGMENT_SIZE * 2 + 123];
+    new Random(1).nextBytes(body);
+    try (DirectContentStore store = new DirectContentStore()) {
+      PartContent content = store(store, body, 1000);
+      Assert.assertEquals(content.length(), (long) body.length);
+      Assert.assertEquals(content.toByteArray(), body);
+      // each stream reads independently
+      try (InputStream a = content.openStream();
+          InputStream b = content.openStream()) {
+        Assert.assertEquals(a.read(), body[0] & 0xff);
+        Assert.assertEquals(readAll(b), body);
+      }
+      Assert.assertEquals(store(store, new byte[0], 1).length(), 0L, "empty body");
+    }
+  }
+
+  @Test
+  public void close_ReleasesWhenStreamsClose() throws Exception {
+    byte[] body = new byte[DirectContentStore.SEGMENT_SIZE + 1];
+    new Random(2).nextBytes(body);
+    DirectContentStore store = new DirectContentStore();
+    PartContent content = store(store, body, 4096);
+    InputStream open = content.openStream();
+    store.close();
+
+    // a stream opened before the store closed still reads the content
+    Assert.assertEquals(readAll(open), body);
+    int pooled = DirectContentStore.pooledSegments();
+    open.close();
+    Assert.assertTrue(
+        DirectContentStore.pooledSegments() >= pooled, "segments return to the pool");
+
+    try {
+      content.openStream();
+      Assert.fail("expected exception");
+    } catch (IOException expected) {
+      Assert.assertEquals(expected.getMessage(), "content has been released");
+    }
+  }
+}
@@ -0,0 +1,128 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.util.List;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestFormDescriptor {
+
+  @Test
+  public void parse_MultipleParts() throws Exception {
+    String json =
+        "{\n"
+            + "  \"part2.png\" : {\n"
+            + "    \"content-var\" :  \"imageBytes\",\n"
+            + "    \"content-type\" : \"image/png\",\n"
+            + "    \"unknown\" : { \"nested\": [1, {\"a\": 2}] },\n"
+            + "    \"want-b64-decode\": true,\n"
+            + "    \"file-name\": \"Logs_512px.png\"\n"
+            + "  },\n"
+            + "  \"part1.json\" : {\n"
+            + "    \"content-var\" :  \"descriptor-json\",\n"
+            + "    \"transfer-encoding\" : \"base64\"\n"
+            + "  }\n"
+            + "}\n";
+    List<PartSpec> specs = FormDescriptor.parse(json);
+    Assert.assertEquals(specs.size(), 2);
+    PartSpec first = specs.get(0);
+    Assert.assertEquals(first.getName(), "part2.png");
+    Assert.assertEquals(first.getContentVar(), "imageBytes");
+    Assert.assertEquals(first.getContentType(), "image/png");
+    Assert.assertEquals(first.getFileName(), "Logs_512px.png");
+    Assert.assertTrue(first.getWantBase64Decode());
+    PartSpec second = specs.get(1);
+    Assert.assertEquals(second.getName(), "part1.json");
+    Assert.assertEquals(second.getTransferEncoding(), "base64");
+    Assert.assertFalse(second.getWantBase64Decode());
+  }
+
+  @Test
+  public void parse_ResourceAndCacheable() throws Exception {
+    String json =
+        "{\n"
+            + "  \"terms.pdf\" : {\n"
+            + "    \"content-resource\" : \"classpath:/terms.pdf\",\n"
+            + "    \"content-type\" : \"application/pdf\"\n"
+            + "  },\n"
+            + "  \"logo.png\" : {\n"
+            + "    \"content-resource\" : \"file:/var/lib/logo.png\",\n"
+            + "    \"cacheable\" : false\n"
+            + "  },\n"
+            + "  \"schema\" : {\n"
+            + "    \"content-var\" : \"schema-json\",\n"
+            + "    \"cacheable\" : true\n"
+            + "  },\n"
+            + "  \"plain\" : { \"content-var\" : \"x\" }\n"
+            + "}\n";
+    List<PartSpec> specs = FormDescriptor.parse(json);
+    Assert.assertEquals(specs.get(0).getContentResource(), "classpath:/terms.pdf");
+    Assert.assertTrue(specs.get(0).isCacheable(), "resources are cacheable by default");
+    Assert.assertFalse(specs.get(1).isCacheable(), "explicitly not cacheable");
+    Assert.assertTrue(specs.get(2).isCacheable(), "cacheable variable");
+    Assert.assertFalse(specs.get(3).isCacheable(), "variables are not cacheable by default");
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void parse_NotAnObject() throws Exception {
+    FormDescriptor.parse("[ 1, 2 ]");
+  }
+
+  private static String invalid(String json) {
+    try {
+      FormDescriptor.parse(json);
+      Assert.fail("accepted " + json);
+      return null;
+    } catch (FormException e) {
+      Assert.assertEquals(e.getCode(), FormException.INVALID_DESCRIPTOR, json);
+      return e.getMessage();
+    }
+  }
+
+  @Test
+  public void parse_MalformedJson() throws Exception {
+    for (String json :
+        new String[] {
+          "{ \"a\" : { \"content-var\" : \"x\" ",
+          "{ \"a\" : { \"content-var\" : x } }",
+          "{ \"a\" : { \"content-var\" : \"x\", } }",
+          "{ \"a\" "
+        }) {
+      Assert.assertTrue(invalid(json).startsWith("descriptor is not valid JSON"), json);
+    }
+  }
+
+  @Test
+  public void parse_WrongValueType() throws Exception {
+    Assert.assertEquals(
+        invalid("{ \"a\" : { \"content-var\" : {} } }"), "part a: content-var must be a string");
+    Assert.assertEquals(
+        invalid("{ \"a\" : { \"content-type\" : [\"text/plain\"] } }"),
+        "part a: content-type must be a string");
+    Assert.assertEquals(
+        invalid("{ \"a\" : { \"want-b64-decode\" : \"yes\" } }"),
+        "part a: want-b64-decode must be a boolean");
+    Assert.assertEquals(
+        invalid("{ \"a\" : { \"cacheable\" : 1 } }"), "part a: cacheable must be a boolean");
+    // the strings true and false are still accepted
+    List<PartSpec> specs =
+        FormDescriptor.parse(
+            "{ \"a\" : { \"content-var\" : \"x\", \"want-b64-decode\" : \"TRUE\" } }");
+    Assert.assertTrue(specs.get(0).getWantBase64Decode());
+  }
+}
@@ -0,0 +1,183 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestFormIndex {
+  private static final String BOUNDARY = "--------------------INDEX0123";
+
+  private static byte[] text(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] form(List<Part> parts) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new MultipartForm(BOUNDARY, parts).openStream()) {
+      byte[] buf = new byte[1024];
+      int n;
+      while ((n = in.read(buf, 0, buf.length)) != -1) {
+        out.write(buf, 0, n);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  @Test
+  public void build_IndexesParts() throws Exception {
+    List<Part> parts = new ArrayList<Part>();
+    parts.add(new Part("greeting").withContentType("text/plain").withPartContent(text("hello")));
+    parts.add(
+        new Part("data")
+            .withContentType("application/octet-stream")
+            .withFileName("data.bin")
+            .withPartContent(text("\r\n--not-the-boundary\r\n")));
+    parts.add(new Part("empty").withContentType("text/plain").withPartContent(new byte[0]));
+    byte[] body = form(parts);
+
+    FormIndex index = FormIndex.build(body, body.length, BOUNDARY);
+    Assert.assertEquals(index.getParts().size(), 3);
+
+    FormIndex.Entry greeting = index.get("greeting");
+    Assert.assertEquals(greeting.getContentType(), "text/plain");
+    Assert.assertNull(greeting.getFileName(), "filename");
+    Assert.assertEquals(index.content(greeting).toByteArray(), text("hello"));
+    Assert.assertEquals(
+        new String(body, greeting.getOffset(), greeting.getLength(), StandardCharsets.UTF_8),
+        "hello");
+
+    FormIndex.Entry data = index.get("data");
+    Assert.assertEquals(data.getFileName(), "data.bin");
+    Assert.assertEquals(
+        data.getHeaders().get("content-disposition"),
+        "form-data; name=\"data\"; filename=\"data.bin\"");
+    Assert.assertEquals(index.content(data).toByteArray(), text("\r\n--not-the-boundary\r\n"));
+    Assert.assertEquals(index.buffer(data).remaining(), data.getLength());
+    // visitors get the slice of the array itself, which they read in bulk
+    Assert.assertTrue(index.slice(data).hasArray(), "slice has an array");
+    Assert.assertEquals(index.slice(data).remaining(), data.getLength());
+    Assert.assertEquals(
+        index.slice(data).arrayOffset() + index.slice(data).position(), data.getOffset());
+
+    Assert.assertEquals(index.content(index.get("empty")).length(), 0L);
+    Assert.assertNull(index.get("missing"), "missing");
+  }
+
+  @Test
+  public void build_UsesOnlyTheGivenLength() throws Exception {
+    List<Part> parts = new ArrayList<Part>();
+    parts.add(new Part("a").withContentType("text/plain").withPartContent(text("abc")));
+    byte[] form = form(parts);
+    // as when the body is read into a larger buffer
+    byte[] buffer = new byte[form.length + 100];
+    System.arraycopy(form, 0, buffer, 0, form.length);
+    FormIndex index = FormIndex.build(buffer, form.length, BOUNDARY);
+    Assert.assertEquals(index.content(index.get("a")).toByteArray(), text("abc"));
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void build_Truncated() throws Exception {
+    List<Part> parts = new ArrayList<Part>();
+    parts.add(new Part("a").withContentType("text/plain").withPartContent(text("abc")));
+    byte[] body = form(parts);
+    FormIndex.build(body, body.length - 10, BOUNDARY);
+  }
+
+  // Many parts of assorted sizes, so that delimiters fall on and around segment boundaries, and
+  // content that holds the dash boundary without a preceding CRLF.
+  private static byte[] largeForm() throws Exception {
+    Random random = new Random(43);
+    List<Part> parts = new ArrayList<Part>();
+    int total = 0;
+    for (int i = 0; total < 6 * FormIndex.MIN_SEGMENT_SIZE; i++) {
+      byte[] content = new byte[(i % 7 == 0) ? random.nextInt(400000) : random.nextInt(5000)];
+      random.nextBytes(content);
+      if (i % 5 == 0 && content.length > 100) {
+        byte[] decoy = text("x--" + BOUNDARY + "\r\n--not-the-boundary");
+        System.arraycopy(decoy, 0, content, 10, decoy.length);
+      }
+      parts.add(
+          new Part("part" + i)
+              .withContentType("application/octet-stream")
+              .withFileName("part" + i + ".bin")
+              .withPartContent(content));
+      total += content.length;
+    }
+    return form(parts);
+  }
+
+  private static void assertSameIndex(FormIndex actual, FormIndex expected) {
+    Assert.assertEquals(actual.getParts().size(), expected.getParts().size(), "part count");
+    for (int i = 0; i < expected.getParts().size(); i++) {
+      FormIndex.Entry a = actual.getParts().get(i);
+      FormIndex.Entry e = expected.getParts().get(i);
+      Assert.assertEquals(a.getName(), e.getName(), "name " + i);
+      Assert.assertEquals(a.getOffset(), e.getOffset(), "offset " + i);
+      Assert.assertEquals(a.getLength(), e.getLength(), "length " + i);
+      Assert.assertEquals(a.getHeaders(), e.getHeaders(), "headers " + i);
+    }
+  }
+
+  @Test
+  public void build_ParallelSameAsSerial() throws Exception {
+    byte[] body = largeForm();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      assertSameIndex(
+          FormIndex.build(body, body.length, BOUNDARY, pool),
+          FormIndex.build(body, body.length, BOUNDARY));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void build_ParallelBareBoundary() throws Exception {
+    // delimiters without the leading dashes are left to the serial parser
+    String dashed = new String(largeForm(), StandardCharsets.ISO_8859_1);
+    byte[] body = dashed.replace("\r\n--" + BOUNDARY, "\r\n" + BOUNDARY)
+        .replaceFirst("^--", "")
+        .getBytes(StandardCharsets.ISO_8859_1);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      FormIndex index = FormIndex.build(body, body.length, BOUNDARY, pool);
+      assertSameIndex(index, FormIndex.build(body, body.length, BOUNDARY));
+      Assert.assertTrue(index.getParts().size() > 10, "parts");
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void build_ParallelTruncated() throws Exception {
+    byte[] body = largeForm();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      FormIndex.build(body, body.length - 10, BOUNDARY, pool);
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,115 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestMemoryBudget {
+
+  @Test
+  public void tryReserve_WithinLimit() throws Exception {
+    MemoryBudget budget = new MemoryBudget(1000);
+    Assert.assertTrue(budget.tryReserve(600), "600");
+    Assert.assertFalse(budget.tryReserve(500), "500 more");
+    Assert.assertTrue(budget.tryReserve(400), "400 more");
+    Assert.assertEquals(budget.reservedBytes(), 1000L);
+    budget.release(600);
+    Assert.assertEquals(budget.reservedBytes(), 400L);
+  }
+
+  @Test
+  public void reserve_WaitsForRelease() throws Exception {
+    MemoryBudget budget = new MemoryBudget(1000);
+    Assert.assertTrue(budget.tryReserve(1000));
+    Thread releaser =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException e) {
+                return;
+              }
+              budget.release(300);
+            });
+    releaser.start();
+    Assert.assertTrue(budget.reserve(300, 5000), "after release");
+    releaser.join();
+    Assert.assertEquals(budget.reservedBytes(), 1000L);
+  }
+
+  @Test
+  public void reserve_TimesOut() throws Exception {
+    MemoryBudget budget = new MemoryBudget(1000);
+    Assert.assertTrue(budget.tryReserve(900));
+    long start = System.nanoTime();
+    Assert.assertFalse(budget.reserve(200, 30), "timed out");
+    Assert.assertTrue(System.nanoTime() - start >= 30_000_000L, "waited");
+    Assert.assertFalse(budget.reserve(2000, 1000), "larger than the budget");
+    Assert.assertEquals(budget.reservedBytes(), 900L);
+  }
+
+  @Test
+  public void reservation_GrowsInSteps() throws Exception {
+    MemoryBudget budget = new MemoryBudget(1024 * 1024);
+    try (MemoryBudget.Reservation reservation = budget.open()) {
+      Assert.assertTrue(reservation.ensure(1000, 0));
+      Assert.assertEquals(reservation.heldBytes(), 64L * 1024, "rounded up");
+      Assert.assertTrue(reservation.ensure(9000, 0));
+      Assert.assertEquals(budget.reservedBytes(), 64L * 1024, "already held");
+      Assert.assertTrue(reservation.ensure(1024 * 1024, 0));
+      Assert.assertFalse(reservation.ensure(1024 * 1024 + 1, 0), "beyond the budget");
+    }
+    Assert.assertEquals(budget.reservedBytes(), 0L, "released on close");
+  }
+
+  @Test
+  public void lease_HoldsBytesAfterTheReservationCloses() throws Exception {
+    MemoryBudget budget = new MemoryBudget(1024 * 1024);
+    MemoryBudget.Lease lease;
+    try (MemoryBudget.Reservation reservation = budget.open()) {
+      Assert.assertTrue(reservation.ensure(1000, 0));
+      lease = reservation.lease();
+      Assert.assertEquals(reservation.heldBytes(), 0L, "moved to the lease");
+      Assert.assertTrue(reservation.ensure(1000, 0));
+      reservation.addTo(lease);
+    }
+    Assert.assertEquals(lease.heldBytes(), 128L * 1024);
+    Assert.assertEquals(budget.reservedBytes(), 128L * 1024, "held past the reservation");
+    lease.close();
+    Assert.assertEquals(budget.reservedBytes(), 0L, "released on close");
+    lease.close();
+    Assert.assertEquals(budget.reservedBytes(), 0L, "released once");
+  }
+
+  @Test
+  public void lease_ReclaimedWhenUnreachable() throws Exception {
+    MemoryBudget budget = new MemoryBudget(64 * 1024);
+    try (MemoryBudget.Reservation reservation = budget.open()) {
+      Assert.assertTrue(reservation.ensure(64 * 1024, 0));
+      reservation.lease();
+    }
+    Assert.assertFalse(budget.tryReserve(1), "held by the lease");
+    boolean reserved = false;
+    for (int i = 0; i < 50 && !reserved; i++) {
+      System.gc();
+      Thread.sleep(10);
+      reserved = budget.tryReserve(64 * 1024);
+    }
+    Assert.assertTrue(reserved, "reclaimed after the lease became unreachable");
+  }
+}
@@ -0,0 +1,170 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestMultipartParser {
+  private static final String testDataDir = "src/test/resources/test-data";
+
+  static class Collector implements PartListener {
+    List<String> headers = new ArrayList<String>();
+    List<byte[]> bodies = new ArrayList<byte[]>();
+    ByteArrayOutputStream current;
+
+    public void onPartStart() {
+      current = new ByteArrayOutputStream();
+    }
+
+    public void onHeader(String name, String value) {
+      headers.add(name.toLowerCase() + "=" + value);
+    }
+
+    public void onBodyChunk(ByteBuffer chunk) {
+      byte[] b = new byte[chunk.remaining()];
+      chunk.get(b);
+      current.write(b, 0, b.length);
+    }
+
+    public void onPartEnd() {
+      bodies.add(current.toByteArray());
+      current = null;
+    }
+  }
+
+  private static Collector parse(byte[] payload, String boundary, int chunkSize, boolean direct) {
+    Collector collector = new Collector();
+    MultipartParser parser = new MultipartParser(boundary, collector);
+    for (int offset = 0; offset < payload.length; offset += chunkSize) {
+      int n = Math.min(chunkSize, payload.length - offset);
+      ByteBuffer chunk;
+      if (direct) {
+        chunk = ByteBuffer.allocateDirect(n);
+        chunk.put(payload, offset, n);
+        chunk.flip();
+      } else {
+        chunk = ByteBuffer.wrap(payload, offset, n);
+      }
+      parser.feed(chunk);
+    }
+    parser.finish();
+    Assert.assertTrue(parser.isComplete(), "complete");
+    Assert.assertEquals(parser.getPosition(), (long) payload.length, "position");
+    return collector;
+  }
+
+  private static byte[] readAll(InputStream is) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    byte[] data = new byte[1024];
+    int n;
+    while ((n = is.read(data, 0, data.length)) != -1) {
+      os.write(data, 0, n);
+    }
+    return os.toByteArray();
+  }
+
+  @Test
+  public void parse_Chunked_AllSizes() throws Exception {
+    byte[] image = Files.readAllBytes(Paths.get(testDataDir, "Logs_512px.png"));
+    // bodies that contain partial delimiters exercise the carry-over across chunks
+    byte[] tricky = "a\r\n--\r\n--xx\r\r\n-\r\n--boundary-ish".getBytes(StandardCharsets.UTF_8);
+    List<Part> parts = new ArrayList<Part>();
+    parts.add(new Part("field1").withContentType("text/plain").withPartContent(tricky));
+    parts.add(
+        new Part("image").withContentType("image/png").withFileName("x.png").withPartContent(image));
+    parts.add(new Part("empty").withContentType("text/plain").withPartContent(new byte[0]));
+    String boundary = "--------------------ABCDEF0123";
+    byte[] payload = readAll(new MultipartForm(boundary, parts).openStream());
+
+    for (int chunkSize : new int[] {1, 2, 3, 7, 13, 64, 1000, payload.length}) {
+      for (boolean direct : new boolean[] {false, true}) {
+        Collector c = parse(payload, boundary, chunkSize, direct);
+        Assert.assertEquals(c.bodies.size(), 3, "number of parts, chunk size " + chunkSize);
+        Assert.assertTrue(Arrays.equals(c.bodies.get(0), tricky), "part 1, chunk size " + chunkSize);
+        Assert.assertTrue(Arrays.equals(c.bodies.get(1), image), "part 2, chunk size " + chunkSize);
+        Assert.assertEquals(c.bodies.get(2).length, 0, "part 3, chunk size " + chunkSize);
+        Assert.assertEquals(
+            c.headers.get(2), "content-disposition=form-data; name=\"image\"; filename=\"x.png\"");
+      }
+    }
+  }
+
+  @Test
+  public void parse_BareBoundaryDelimiter() throws Exception {
+    byte[] payload = Files.readAllBytes(Paths.get(testDataDir, "MultiPart-payload.2.out"));
+    for (int chunkSize : new int[] {1, 5, 4096}) {
+      Collector c = parse(payload, "----------------------QCN1DGMIPH8GPY", chunkSize, false);
+      Assert.assertEquals(c.bodies.size(), 2, "number of parts");
+      Assert.assertEquals(new String(c.bodies.get(0), StandardCharsets.UTF_8), "value-goes-here");
+      Assert.assertEquals(c.headers.get(2), "content-type=image/png");
+    }
+  }
+
+  @Test
+  public void parse_Truncated() throws Exception {
+    byte[] payload =
+        ("--b\r\nContent-Disposition: form-data; name=\"a\"\r\n\r\nhello\r\n--b")
+            .getBytes(StandardCharsets.UTF_8);
+    Collector c = new Collector();
+    MultipartParser parser = new MultipartParser("b", c);
+    parser.feed(ByteBuffer.wrap(payload));
+    Assert.assertFalse(parser.isComplete(), "complete");
+    Assert.assertEquals(c.bodies.size(), 1, "number of parts");
+    try {
+      parser.finish();
+      Assert.fail("expected exception");
+    } catch (FormException expected) {
+      Assert.assertEquals(expected.getCode(), FormException.TRUNCATED_FORM);
+      Assert.assertEquals(expected.getStackTrace().length, 0, "stack trace");
+    }
+  }
+
+  @Test
+  public void boundaryOf_Invalid() throws Exception {
+    FormException first = null;
+    for (int i = 0; i < 2; i++) {
+      try {
+        MultipartParser.boundaryOf("text/plain");
+        Assert.fail("expected exception");
+      } catch (FormException expected) {
+        Assert.assertEquals(expected.getCode(), FormException.UNSUPPORTED_CONTENT_TYPE);
+        if (first != null) {
+          Assert.assertSame(expected, first, "preallocated");
+        }
+        first = expected;
+      }
+    }
+    try {
+      MultipartParser.boundaryOf("multipart/form-data; boundary=");
+      Assert.fail("expected exception");
+    } catch (FormException expected) {
+      Assert.assertEquals(expected.getCode(), FormException.MISSING_BOUNDARY);
+    }
+    Assert.assertEquals(MultipartParser.boundaryOf("multipart/form-data; boundary=xyz"), "xyz");
+  }
+}
@@ -0,0 +1,63 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestPartCache {
+
+  private static PartCache.Entry entry(int size) {
+    return new PartCache.Entry(new byte[10], new byte[size - 10]);
+  }
+
+  @Test
+  public void put_EvictsLeastRecentlyUsed() throws Exception {
+    PartCache cache = new PartCache(1000);
+    cache.put("a", entry(200));
+    cache.put("b", entry(200));
+    cache.put("c", entry(200));
+    cache.put("d", entry(200));
+    Assert.assertNotNull(cache.get("a"), "a"); // now b is the eldest
+    cache.put("e", entry(250));
+    Assert.assertEquals(cache.size(), 4);
+    Assert.assertNull(cache.get("b"), "b was evicted");
+    Assert.assertNotNull(cache.get("a"), "a");
+    Assert.assertNotNull(cache.get("e"), "e");
+    Assert.assertEquals(cache.totalBytes(), 850L);
+  }
+
+  @Test
+  public void put_TooLarge() throws Exception {
+    PartCache cache = new PartCache(1000);
+    cache.put("a", entry(200));
+    Assert.assertFalse(cache.put("big", entry(251)), "larger than a quarter of the limit");
+    Assert.assertNull(cache.get("big"));
+    Assert.assertNotNull(cache.get("a"), "a");
+    Assert.assertEquals(cache.hits(), 1L);
+    Assert.assertEquals(cache.misses(), 1L);
+  }
+
+  @Test
+  public void put_Replace() throws Exception {
+    PartCache cache = new PartCache(1000);
+    cache.put("a", entry(200));
+    cache.put("a", entry(100));
+    Assert.assertEquals(cache.size(), 1);
+    Assert.assertEquals(cache.totalBytes(), 100L);
+  }
+}
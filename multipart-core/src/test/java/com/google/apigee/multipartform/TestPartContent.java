@@ -0,0 +1,100 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import com.google.apigee.stream.ConcatenatedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestPartContent {
+
+  @Test
+  public void once_SecondOpenFails() throws Exception {
+    byte[] bytes = "upstream body".getBytes(StandardCharsets.UTF_8);
+    PartContent content = PartContent.once(new ByteArrayInputStream(bytes), bytes.length);
+    Assert.assertEquals(content.length(), (long) bytes.length);
+    Assert.assertEquals(content.toByteArray(), bytes);
+    try {
+      content.openStream();
+      Assert.fail("the stream was handed out twice");
+    } catch (IOException expected) {
+      Assert.assertEquals(expected.getMessage(), "content stream has already been opened");
+    }
+  }
+
+  @Test
+  public void lazy_EachOpenIsNew() throws Exception {
+    byte[] bytes = "0123456789".getBytes(StandardCharsets.UTF_8);
+    PartContent content = PartContent.lazy(() -> new ByteArrayInputStream(bytes), -1);
+    try (InputStream first = content.openStream();
+        InputStream second = content.openStream()) {
+      Assert.assertTrue(first != second, "a new stream on each open");
+    }
+    Assert.assertEquals(content.toByteArray(), bytes);
+    Assert.assertEquals(content.toByteArray(), bytes);
+  }
+
+  // a stream that records whether it was closed
+  private static final class TrackedStream extends ByteArrayInputStream {
+    boolean closed;
+
+    TrackedStream(byte[] bytes) {
+      super(bytes);
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  @Test
+  public void once_ReleasedWhenNeverOpened() throws Exception {
+    byte[] bytes = "upstream body".getBytes(StandardCharsets.UTF_8);
+    TrackedStream first = new TrackedStream(bytes);
+    TrackedStream second = new TrackedStream(bytes);
+    InputStream in =
+        new ConcatenatedInputStream(
+            Arrays.asList(
+                PartContent.once(first, bytes.length).asSource(),
+                PartContent.once(second, bytes.length).asSource()));
+    Assert.assertTrue(in.read() != -1);
+    in.close();
+    Assert.assertTrue(first.closed, "the stream being read is closed");
+    Assert.assertTrue(second.closed, "the stream never reached is released");
+  }
+
+  @Test
+  public void form_ClosedUnreadReleasesContent() throws Exception {
+    byte[] bytes = "upstream body".getBytes(StandardCharsets.UTF_8);
+    TrackedStream body = new TrackedStream(bytes);
+    List<Part> parts = new ArrayList<Part>();
+    parts.add(
+        new Part("body")
+            .withContentType("text/plain")
+            .withContent(PartContent.once(body, bytes.length)));
+    new MultipartForm("--------------------ABCDEF0123", parts).openStream().close();
+    Assert.assertTrue(body.closed, "released");
+  }
+}
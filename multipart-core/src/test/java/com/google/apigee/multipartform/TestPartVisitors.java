@@ -0,0 +1,58 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestPartVisitors {
+
+  private static String crc32c(ByteBuffer... chunks) {
+    PartVisitor visitor = PartVisitors.forName("crc32c");
+    visitor.startPart();
+    for (ByteBuffer chunk : chunks) {
+      visitor.visit(chunk);
+    }
+    return visitor.endPart();
+  }
+
+  @Test
+  public void crc32c_KnownValue() throws Exception {
+    // the check value for CRC-32C, from RFC 3720
+    Assert.assertEquals(crc32c(ByteBuffer.wrap("123456789".getBytes("US-ASCII"))), "e3069283");
+  }
+
+  @Test
+  public void crc32c_BuffersWithoutArray() throws Exception {
+    byte[] bytes = new byte[3 * 8192 + 17];
+    new Random(7).nextBytes(bytes);
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+    direct.put(bytes).flip();
+    String expected = crc32c(ByteBuffer.wrap(bytes));
+    Assert.assertEquals(crc32c(direct), expected, "direct");
+    Assert.assertEquals(direct.remaining(), bytes.length, "the chunk is not consumed");
+    Assert.assertEquals(crc32c(ByteBuffer.wrap(bytes).asReadOnlyBuffer()), expected, "read-only");
+    Assert.assertEquals(
+        crc32c(
+            ByteBuffer.wrap(bytes, 0, 5000).asReadOnlyBuffer(),
+            ByteBuffer.wrap(bytes, 5000, bytes.length - 5000)),
+        expected,
+        "in chunks");
+  }
+}
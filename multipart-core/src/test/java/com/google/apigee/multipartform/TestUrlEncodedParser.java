@@ -0,0 +1,123 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.multipartform;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestUrlEncodedParser {
+
+  // Collects each field as "name=value", and the largest value chunk it received.
+  private static final class Collector implements FieldListener {
+    final List<String> fields = new ArrayList<String>();
+    private final ByteArrayOutputStream value = new ByteArrayOutputStream();
+    private String name;
+    int largestChunk;
+
+    public void onFieldStart(String name) {
+      this.name = name;
+      value.reset();
+    }
+
+    public void onValueChunk(ByteBuffer chunk) {
+      largestChunk = Math.max(largestChunk, chunk.remaining());
+      value.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+    }
+
+    public void onFieldEnd() {
+      fields.add(name + "=" + new String(value.toByteArray(), StandardCharsets.UTF_8));
+    }
+  }
+
+  private static List<String> parse(String content, int chunkSize) {
+    return parse(content, chunkSize, new Collector()).fields;
+  }
+
+  private static Collector parse(String content, int chunkSize, Collector collector) {
+    UrlEncodedParser parser = new UrlEncodedParser(collector);
+    byte[] bytes = content.getBytes(StandardCharsets.ISO_8859_1);
+    for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+      parser.feed(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+    }
+    parser.finish();
+    return collector;
+  }
+
+  @Test
+  public void parse_DecodesFields() throws Exception {
+    String content = "name=J%C3%BCrgen+M%c3%bcller&empty=&flag&&expr=a%3Db%26c=d&sp%20ace=1";
+    // every chunk size, so that escapes and delimiters are split across chunks
+    for (int chunkSize = 1; chunkSize <= content.length(); chunkSize++) {
+      List<String> fields = parse(content, chunkSize);
+      Assert.assertEquals(fields.size(), 5, "chunk size " + chunkSize);
+      Assert.assertEquals(fields.get(0), "name=J\u00fcrgen M\u00fcller");
+      Assert.assertEquals(fields.get(1), "empty=");
+      Assert.assertEquals(fields.get(2), "flag=");
+      Assert.assertEquals(fields.get(3), "expr=a=b&c=d");
+      Assert.assertEquals(fields.get(4), "sp ace=1");
+    }
+  }
+
+  @Test
+  public void parse_AgreesWithUrlDecoder() throws Exception {
+    StringBuilder content = new StringBuilder();
+    List<String> expected = new ArrayList<String>();
+    for (int i = 0; i < 200; i++) {
+      String value = "v\u00e9" + i + " +%&=/?\u4e2d" + new String(new char[i]).replace('\0', 'x');
+      String encoded = URLEncoder.encode(value, "UTF-8");
+      content.append(content.length() == 0 ? "" : "&").append("field").append(i).append('=');
+      content.append(encoded);
+      expected.add("field" + i + "=" + URLDecoder.decode(encoded, "UTF-8"));
+    }
+    Assert.assertEquals(parse(content.toString(), 7), expected);
+    Assert.assertEquals(parse(content.toString(), 8192), expected);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void parse_InvalidEscape() throws Exception {
+    parse("a=%zz", 3);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void parse_TruncatedEscape() throws Exception {
+    parse("a=1&b=%4", 3);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void parse_NameTooLong() throws Exception {
+    parse(new String(new char[UrlEncodedParser.MAX_NAME_LENGTH + 1]).replace('\0', 'n'), 1000);
+  }
+
+  @Test
+  public void parse_LongValue() throws Exception {
+    String value = new String(new char[100000]).replace('\0', 'v');
+    for (String encoded : new String[] {value, value.replace("v", "%76")}) {
+      Collector collector = parse("big=" + encoded + "&small=1", 65536, new Collector());
+      Assert.assertEquals(collector.fields.size(), 2);
+      Assert.assertEquals(collector.fields.get(0), "big=" + value);
+      // the value is passed on in chunks, never held whole
+      Assert.assertEquals(collector.largestChunk, UrlEncodedParser.VALUE_CHUNK_SIZE);
+    }
+  }
+}
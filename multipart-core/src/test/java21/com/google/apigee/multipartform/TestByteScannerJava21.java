@@ -0,0 +1,145 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+
+package com.google.apigee.multipartform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Checks the Java 21 ByteScanner against the portable one. The tests run from the class
+ * directory, not from the multi-release jar, so the JVM never selects the Java 21 class by itself;
+ * this test loads it from META-INF/versions/21 explicitly. It is compiled and run only by the
+ * java21 profile.
+ */
+public class TestByteScannerJava21 {
+  private static final String SCANNER = "com.google.apigee.multipartform.ByteScanner";
+  private static final String VERSIONED_PATH =
+      "META-INF/versions/21/com/google/apigee/multipartform/ByteScanner.class";
+
+  private Method swarIndexOf;
+
+  // Defines the Java 21 ByteScanner, and delegates every other class to the test class loader.
+  private static final class Java21Loader extends ClassLoader {
+    private final URL versioned;
+
+    Java21Loader(URL versioned) {
+      super(TestByteScannerJava21.class.getClassLoader());
+      this.versioned = versioned;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!name.equals(SCANNER)) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> c = findLoadedClass(name);
+        if (c == null) {
+          try (InputStream in = versioned.openStream()) {
+            byte[] bytes = readAll(in);
+            c = defineClass(name, bytes, 0, bytes.length);
+          } catch (IOException e) {
+            throw new ClassNotFoundException(versioned.toString(), e);
+          }
+        }
+        return c;
+      }
+    }
+  }
+
+  // compiled with release 8, like the other tests, so InputStream.readAllBytes is not available
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[8192];
+    int n;
+    while ((n = in.read(buf, 0, buf.length)) != -1) {
+      out.write(buf, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+  @BeforeClass
+  public void loadJava21Scanner() throws Exception {
+    URL classes = ByteScanner.class.getProtectionDomain().getCodeSource().getLocation();
+    URL versioned = classes.toURI().resolve(VERSIONED_PATH).toURL();
+    Class<?> swar = new Java21Loader(versioned).loadClass(SCANNER);
+    Assert.assertNotSame(swar, ByteScanner.class);
+    // the SWAR variant reads the array through a VarHandle; the portable one has no fields
+    Assert.assertNotNull(swar.getDeclaredField("LONGS"), "SWAR variant");
+    swarIndexOf =
+        swar.getDeclaredMethod("indexOf", byte[].class, int.class, int.class, byte.class);
+    swarIndexOf.setAccessible(true);
+  }
+
+  private int swarIndexOf(byte[] data, int from, int to, byte b) throws Exception {
+    try {
+      return (Integer) swarIndexOf.invoke(null, data, from, to, b);
+    } catch (InvocationTargetException e) {
+      throw (Exception) e.getCause();
+    }
+  }
+
+  @Test
+  public void indexOf_AgreesWithPortableLoop() throws Exception {
+    Random random = new Random(21);
+    // a small alphabet, so that matches are frequent, and bytes that provoke a borrow
+    byte[] alphabet = {'\r', '\n', '-', 'a', 0, 1, (byte) 0x80, (byte) 0x81, (byte) 0xFF};
+    for (int trial = 0; trial < 20000; trial++) {
+      byte[] data = new byte[random.nextInt(160)];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = alphabet[random.nextInt(alphabet.length)];
+      }
+      int from = data.length == 0 ? 0 : random.nextInt(data.length);
+      int to = from + random.nextInt(data.length - from + 1);
+      byte b = alphabet[random.nextInt(alphabet.length)];
+      Assert.assertEquals(
+          swarIndexOf(data, from, to, b),
+          ByteScanner.indexOf(data, from, to, b),
+          String.format("trial %d, from %d, to %d", trial, from, to));
+    }
+  }
+
+  @Test
+  public void indexOf_EveryPositionInAWord() throws Exception {
+    for (int b = 0; b < 256; b++) {
+      // fill with the byte just below the target, the case in which a borrow can mislead
+      byte[] data = new byte[40];
+      Arrays.fill(data, (byte) (b - 1));
+      for (int at = 0; at < data.length; at++) {
+        data[at] = (byte) b;
+        for (int from = 0; from <= at; from++) {
+          Assert.assertEquals(
+              swarIndexOf(data, from, data.length, (byte) b),
+              ByteScanner.indexOf(data, from, data.length, (byte) b),
+              String.format("byte %d at %d, from %d", b, at, from));
+        }
+        data[at] = (byte) (b - 1);
+      }
+      Assert.assertEquals(swarIndexOf(data, 0, data.length, (byte) b), data.length, "absent");
+    }
+  }
+}
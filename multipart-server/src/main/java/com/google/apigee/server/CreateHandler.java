@@ -0,0 +1,206 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.server;
+
+import com.google.apigee.multipartform.FormDescriptor;
+import com.google.apigee.multipartform.MultipartForm;
+import com.google.apigee.multipartform.Part;
+import com.google.apigee.multipartform.PartContent;
+import com.google.apigee.multipartform.PartSpec;
+import com.google.apigee.stream.DecompressingInputStream;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * POST /create: streams a multipart/form-data form back to the client. There are two ways to
+ * describe the form:
+ *
+ * <ul>
+ *   <li>With any content-type other than application/json, the request body becomes the content
+ *       of a single part. The query parameters name, filename and content-type describe the part;
+ *       they default to "file", none, and the content-type of the request. The body is streamed
+ *       into the form as it arrives, and is never held whole.
+ *   <li>With application/json, the request body is a form descriptor, as for
+ *       MultipartFormCreatorV2, in which each part names its content with content-resource: a file
+ *       below the resource directory, optionally prefixed with file:. Each file is opened only when
+ *       the response reaches it. Without a resource directory, the server serves no files. Classpath
+ *       resources are never served, since the classpath holds the server's own classes and
+ *       configuration.
+ * </ul>
+ *
+ * <p>The boundary query parameter sets the boundary; by default it is random.
+ */
+final class CreateHandler extends EngineHandler {
+  private static final int MAX_DESCRIPTOR_LENGTH = 64 * 1024;
+  private static final String ALPHANUMERICS =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+  private final Path resourceDir;
+
+  CreateHandler(Path resourceDir) {
+    this.resourceDir = resourceDir;
+  }
+
+  void handlePost(HttpExchange exchange, Map<String, String> query) throws IOException {
+    String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+    String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+    InputStream body =
+        DecompressingInputStream.forEncoding(
+            exchange.getRequestBody(), contentEncoding, MAX_DECOMPRESSION_RATIO);
+    List<Part> parts;
+    if (contentType != null && contentType.toLowerCase().startsWith("application/json")) {
+      parts = describedParts(readDescriptor(body));
+    } else {
+      Part part =
+          new Part(query.getOrDefault("name", "file"))
+              .withContentType(
+                  query.getOrDefault(
+                      "content-type",
+                      (contentType != null) ? contentType : "application/octet-stream"))
+              .withFileName(query.get("filename"))
+              .withContent(PartContent.once(body, requestLength(exchange)));
+      parts = new ArrayList<Part>();
+      parts.add(part);
+    }
+    String boundary = query.get("boundary");
+    if (boundary == null) {
+      boundary = "--------------------" + randomAlphanumeric(14);
+    }
+    MultipartForm form = new MultipartForm(boundary, parts);
+    sendStream(
+        exchange,
+        "multipart/form-data; boundary=" + boundary,
+        form.openStream(),
+        form.getContentLength());
+  }
+
+  private static String randomAlphanumeric(int length) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = ALPHANUMERICS.charAt(random.nextInt(ALPHANUMERICS.length()));
+    }
+    return new String(chars);
+  }
+
+  private static String readDescriptor(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[BUFFER_SIZE];
+    int n;
+    while ((n = in.read(buf, 0, buf.length)) != -1) {
+      out.write(buf, 0, n);
+      if (out.size() > MAX_DESCRIPTOR_LENGTH) {
+        throw new IllegalStateException("the form descriptor is too long");
+      }
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private List<Part> describedParts(String descriptor) {
+    List<Part> parts = new ArrayList<Part>();
+    for (PartSpec spec : FormDescriptor.parse(descriptor)) {
+      if (spec.getContentResource() == null) {
+        throw new IllegalStateException(
+            String.format("part %s has no content-resource", spec.getName()));
+      }
+      parts.add(
+          new Part(spec.getName())
+              .withContentType(spec.getContentType())
+              .withFileName(spec.getFileName())
+              .withTransferEncoding(spec.getTransferEncoding())
+              .withContent(
+                  resourceContent(
+                      spec.getName(), spec.getContentResource(), spec.getWantBase64Decode())));
+    }
+    return parts;
+  }
+
+  // The resource is checked now, so that a missing one is a 400, but opened only when the form is
+  // streamed out.
+  private PartContent resourceContent(String partName, String resource, boolean decode) {
+    if (resource.startsWith("classpath:")) {
+      throw new IllegalStateException(
+          String.format("part %s: classpath resources are not served", partName));
+    }
+    Path path = resolveFile(partName, resource);
+    if (!Files.isRegularFile(path)) {
+      throw new IllegalStateException(
+          String.format("part %s: resource %s not found", partName, resource));
+    }
+    long length;
+    try {
+      length = Files.size(path);
+    } catch (IOException e) {
+      length = -1;
+    }
+    return content(() -> Files.newInputStream(path), length, decode);
+  }
+
+  // The file must lie below the resource directory once the path is normalized and its links are
+  // followed, whatever the client asks for.
+  private Path resolveFile(String partName, String resource) {
+    if (resourceDir == null) {
+      throw new IllegalStateException(
+          String.format("part %s: the server has no resource directory", partName));
+    }
+    Path path;
+    try {
+      path = resourceDir.resolve(resource.startsWith("file:") ? resource.substring(5) : resource);
+      path = path.normalize();
+      if (path.startsWith(resourceDir)) {
+        path = path.toRealPath();
+      }
+    } catch (InvalidPathException | IOException e) {
+      throw new IllegalStateException(
+          String.format("part %s: resource %s not found", partName, resource));
+    }
+    if (!path.startsWith(resourceDir)) {
+      throw new IllegalStateException(
+          String.format(
+              "part %s: resource %s is outside the resource directory", partName, resource));
+    }
+    return path;
+  }
+
+  private interface Opener {
+    InputStream open() throws IOException;
+  }
+
+  private static PartContent content(Opener opener, long length, boolean decode) {
+    return new PartContent() {
+      public long length() {
+        return decode ? -1 : length;
+      }
+
+      public InputStream openStream() throws IOException {
+        InputStream in = opener.open();
+        return decode ? Base64.getDecoder().wrap(in) : in;
+      }
+    };
+  }
+}
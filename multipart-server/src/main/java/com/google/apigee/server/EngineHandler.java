@@ -0,0 +1,131 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The common handling for the endpoints of the {@link MultipartServer}: only POST is allowed, the
+ * query parameters are decoded, and an IllegalStateException or IllegalArgumentException, the
+ * engine's way of rejecting its input, becomes a 400 response, as does an IOException while
+ * reading the request. An error that occurs after the response has started can only end the
+ * exchange early. A request that the server has no thread for gets a 503.
+ */
+abstract class EngineHandler implements HttpHandler {
+  static final int BUFFER_SIZE = 8192;
+  static final int MAX_DECOMPRESSION_RATIO = 100;
+
+  abstract void handlePost(HttpExchange exchange, Map<String, String> query) throws IOException;
+
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (Thread.currentThread() instanceof MultipartServer.OverflowThread) {
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        sendError(exchange, 503, "the server is busy");
+        return;
+      }
+      if (!exchange.getRequestMethod().equals("POST")) {
+        exchange.getResponseHeaders().set("Allow", "POST");
+        sendError(exchange, 405, "only POST is supported");
+        return;
+      }
+      handlePost(exchange, queryParameters(exchange.getRequestURI().getRawQuery()));
+    } catch (IllegalStateException | IllegalArgumentException e) {
+      if (exchange.getResponseCode() != -1) {
+        throw e;
+      }
+      sendError(exchange, 400, e.getMessage());
+    } catch (IOException e) {
+      // before the response starts, this is a request body that cannot be read or decoded
+      if (exchange.getResponseCode() != -1) {
+        throw e;
+      }
+      sendError(exchange, 400, e.getMessage());
+    } finally {
+      exchange.close();
+    }
+  }
+
+  static Map<String, String> queryParameters(String rawQuery)
+      throws UnsupportedEncodingException {
+    Map<String, String> parameters = new HashMap<String, String>();
+    if (rawQuery == null) {
+      return parameters;
+    }
+    for (String pair : rawQuery.split("&")) {
+      int equals = pair.indexOf('=');
+      if (equals > 0) {
+        parameters.put(
+            URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+            URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+      }
+    }
+    return parameters;
+  }
+
+  /**
+   * Sends the content as the response body, as it is read. With a known length, the response has
+   * a content-length; otherwise it is chunked.
+   */
+  static void sendStream(
+      HttpExchange exchange, String contentType, InputStream content, long length)
+      throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    // for sendResponseHeaders, 0 means chunked and -1 means no body
+    exchange.sendResponseHeaders(200, (length < 0) ? 0 : (length == 0) ? -1 : length);
+    try (InputStream in = content;
+        OutputStream out = exchange.getResponseBody()) {
+      byte[] buf = new byte[BUFFER_SIZE];
+      int n;
+      while ((n = in.read(buf, 0, buf.length)) != -1) {
+        out.write(buf, 0, n);
+      }
+    }
+  }
+
+  static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+    byte[] body = (String.valueOf(message) + "\n").getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  /** The content-length of the request, or -1 if it is not known. */
+  static long requestLength(HttpExchange exchange) {
+    String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+    if (contentLength == null
+        || exchange.getRequestHeaders().getFirst("Content-Encoding") != null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(contentLength.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,170 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.server;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local HTTP server over the multipart engine, built on the JDK's com.sun.net.httpserver, for
+ * running the engine as a sidecar or as a target for throughput tests. It serves three endpoints,
+ * each of which takes a POST:
+ *
+ * <ul>
+ *   <li>/parse parses the multipart/form-data request body as it arrives, and responds with a JSON
+ *       summary of the parts.
+ *   <li>/create wraps the request body, or the files named by a JSON form descriptor, into a
+ *       multipart form, and streams the form back. It serves files only from below the resource
+ *       directory given with --resource-dir.
+ *   <li>/transform streams the request body back through a codec.
+ * </ul>
+ *
+ * <p>Requests run on a fixed pool of threads. When all of them are busy, up to queueSize requests
+ * wait; beyond that, a request is handed to a single overflow thread, which answers it with a 503
+ * without reading its body. The thread that accepts connections never runs a request itself, so
+ * a slow upload cannot stall the other clients. When the overflow thread has queueSize requests of
+ * its own waiting, the connection is dropped.
+ */
+public class MultipartServer {
+  public static final int DEFAULT_PORT = 8080;
+  public static final int DEFAULT_QUEUE_SIZE = 64;
+
+  private final HttpServer server;
+  private final ThreadPoolExecutor executor;
+  private final ThreadPoolExecutor overflow;
+
+  private MultipartServer(
+      HttpServer server, ThreadPoolExecutor executor, ThreadPoolExecutor overflow) {
+    this.server = server;
+    this.executor = executor;
+    this.overflow = overflow;
+  }
+
+  public static MultipartServer start(InetSocketAddress address, int threads, int queueSize)
+      throws IOException {
+    return start(address, threads, queueSize, null);
+  }
+
+  /**
+   * Starts the server. /create serves files only from below resourceDir; when it is null, it
+   * serves none.
+   */
+  public static MultipartServer start(
+      InetSocketAddress address, int threads, int queueSize, Path resourceDir) throws IOException {
+    Path realResourceDir = (resourceDir == null) ? null : resourceDir.toRealPath();
+    ThreadPoolExecutor overflow =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(queueSize),
+            runnable -> new OverflowThread(runnable),
+            new ThreadPoolExecutor.AbortPolicy());
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(queueSize),
+            workerThreads(),
+            (runnable, pool) -> overflow.execute(runnable));
+    HttpServer server = HttpServer.create(address, 0);
+    server.createContext("/parse", new ParseHandler());
+    server.createContext("/create", new CreateHandler(realResourceDir));
+    server.createContext("/transform", new TransformHandler());
+    server.setExecutor(executor);
+    server.start();
+    return new MultipartServer(server, executor, overflow);
+  }
+
+  private static ThreadFactory workerThreads() {
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, "multipart-server-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /** The thread on which requests that the pool has no room for are answered with a 503. */
+  static final class OverflowThread extends Thread {
+    OverflowThread(Runnable runnable) {
+      super(runnable, "multipart-server-overflow");
+      setDaemon(true);
+    }
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /** Stops accepting requests, waits up to delay seconds for those in progress, and stops. */
+  public void stop(int delay) {
+    server.stop(delay);
+    executor.shutdown();
+    overflow.shutdown();
+  }
+
+  private static void usage() {
+    System.out.println(
+        "MultipartServer [--port N] [--threads N] [--queue N] [--resource-dir DIR]");
+  }
+
+  public static void main(String[] args) throws Exception {
+    int port = DEFAULT_PORT;
+    int threads = Runtime.getRuntime().availableProcessors() * 2;
+    int queueSize = DEFAULT_QUEUE_SIZE;
+    Path resourceDir = null;
+    for (int i = 0; i < args.length; i++) {
+      if (i + 1 == args.length) {
+        usage();
+        return;
+      }
+      switch (args[i]) {
+        case "--port":
+          port = Integer.parseInt(args[++i]);
+          break;
+        case "--threads":
+          threads = Integer.parseInt(args[++i]);
+          break;
+        case "--queue":
+          queueSize = Integer.parseInt(args[++i]);
+          break;
+        case "--resource-dir":
+          resourceDir = Paths.get(args[++i]);
+          break;
+        default:
+          usage();
+          return;
+      }
+    }
+    MultipartServer server = start(new InetSocketAddress(port), threads, queueSize, resourceDir);
+    System.out.printf(
+        "listening on port %d, with %d threads and a queue of %d\n",
+        server.getPort(), threads, queueSize);
+  }
+}
@@ -0,0 +1,149 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.server;
+
+import com.google.apigee.json.JavaxJson;
+import com.google.apigee.multipartform.MultipartParser;
+import com.google.apigee.multipartform.Part;
+import com.google.apigee.multipartform.PartListener;
+import com.google.apigee.multipartform.PartVisitor;
+import com.google.apigee.multipartform.PartVisitors;
+import com.google.apigee.stream.DecompressingInputStream;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.json.stream.JsonGenerator;
+
+/**
+ * POST /parse[?visitors=sha256,...]: parses the multipart/form-data request body as it arrives,
+ * decoding any content-encoding, and responds with a JSON summary of the parts:
+ *
+ * <pre>
+ * { "parts" : [ { "name" : "file", "filename" : "a.png", "content-type" : "image/png",
+ *                 "size" : 15013, "sha256" : "..." } ] }
+ * </pre>
+ *
+ * <p>The body of each part is counted, and seen by the visitors, but not retained, so the memory
+ * used does not depend on the size of the upload.
+ */
+final class ParseHandler extends EngineHandler {
+  private static final Pattern fileNamePattern =
+      Pattern.compile("filename=['\"]([^'\"]*)['\"]");
+
+  void handlePost(HttpExchange exchange, Map<String, String> query) throws IOException {
+    String boundary =
+        MultipartParser.boundaryOf(exchange.getRequestHeaders().getFirst("Content-Type"));
+    Summary summary = new Summary(PartVisitors.create(query.get("visitors")));
+    MultipartParser parser = new MultipartParser(boundary, summary);
+    String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+    try (InputStream in =
+        DecompressingInputStream.forEncoding(
+            exchange.getRequestBody(), contentEncoding, MAX_DECOMPRESSION_RATIO)) {
+      byte[] buf = new byte[BUFFER_SIZE];
+      int n;
+      while (!parser.isComplete() && (n = in.read(buf, 0, buf.length)) != -1) {
+        parser.feed(buf, 0, n);
+      }
+    }
+    parser.finish();
+
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, 0);
+    try (OutputStream out = exchange.getResponseBody();
+        JsonGenerator json = JavaxJson.createGenerator(out)) {
+      json.writeStartObject().writeStartArray("parts");
+      for (Map<String, Object> part : summary.parts) {
+        json.writeStartObject();
+        for (Map.Entry<String, Object> entry : part.entrySet()) {
+          if (entry.getValue() instanceof Long) {
+            json.write(entry.getKey(), (Long) entry.getValue());
+          } else {
+            json.write(entry.getKey(), (String) entry.getValue());
+          }
+        }
+        json.writeEnd();
+      }
+      json.writeEnd().writeEnd();
+    }
+  }
+
+  /** Collects the headers, size and visitor results of each part, and none of its content. */
+  private static class Summary implements PartListener {
+    private final PartVisitor[] visitors;
+    final List<Map<String, Object>> parts = new ArrayList<Map<String, Object>>();
+    private String disposition;
+    private String contentType;
+    private long size;
+
+    Summary(List<PartVisitor> visitors) {
+      this.visitors = visitors.toArray(new PartVisitor[0]);
+    }
+
+    public void onPartStart() {
+      disposition = null;
+      contentType = null;
+      size = 0;
+      for (PartVisitor visitor : visitors) {
+        visitor.startPart();
+      }
+    }
+
+    public void onHeader(String name, String value) {
+      if (name.equalsIgnoreCase("content-disposition")) {
+        disposition = value;
+      } else if (name.equalsIgnoreCase("content-type")) {
+        contentType = value;
+      }
+    }
+
+    public void onBodyChunk(ByteBuffer chunk) {
+      for (PartVisitor visitor : visitors) {
+        visitor.visit(chunk);
+      }
+      size += chunk.remaining();
+    }
+
+    public void onPartEnd() {
+      String name = (disposition == null) ? null : Part.nameFromContentDisposition(disposition);
+      if (name == null) {
+        throw new IllegalStateException("part.getName() is null");
+      }
+      Map<String, Object> part = new LinkedHashMap<String, Object>();
+      part.put("name", name);
+      Matcher matcher = fileNamePattern.matcher(disposition);
+      if (matcher.find()) {
+        part.put("filename", matcher.group(1));
+      }
+      if (contentType != null) {
+        part.put("content-type", contentType);
+      }
+      part.put("size", size);
+      for (PartVisitor visitor : visitors) {
+        part.put(visitor.getName(), visitor.endPart());
+      }
+      parts.add(part);
+    }
+  }
+}
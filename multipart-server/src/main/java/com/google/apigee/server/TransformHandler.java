@@ -0,0 +1,84 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.server;
+
+import com.google.apigee.stream.Base64EncodingInputStream;
+import com.google.apigee.stream.CompressingInputStream;
+import com.google.apigee.stream.DecompressingInputStream;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * POST /transform?op=OP: streams the request body back through a codec, as it arrives. OP is one
+ * of base64-encode, base64-decode, base64url-encode, base64url-decode, gzip, deflate, gunzip or
+ * inflate. The response has a content-length only when it can be known in advance, that is, when
+ * encoding base64 a body of known length.
+ */
+final class TransformHandler extends EngineHandler {
+
+  void handlePost(HttpExchange exchange, Map<String, String> query) throws IOException {
+    String op = query.get("op");
+    if (op == null) {
+      throw new IllegalStateException("the op parameter is required");
+    }
+    InputStream body = exchange.getRequestBody();
+    long length = requestLength(exchange);
+    InputStream content;
+    switch (op.toLowerCase()) {
+      case "base64-encode":
+        content = new Base64EncodingInputStream(body, Base64.getEncoder());
+        length = (length < 0) ? -1 : Base64EncodingInputStream.encodedLength(length);
+        break;
+      case "base64url-encode":
+        content = new Base64EncodingInputStream(body, Base64.getUrlEncoder());
+        length = (length < 0) ? -1 : Base64EncodingInputStream.encodedLength(length);
+        break;
+      case "base64-decode":
+        content = Base64.getDecoder().wrap(body);
+        length = -1;
+        break;
+      case "base64url-decode":
+        content = Base64.getUrlDecoder().wrap(body);
+        length = -1;
+        break;
+      case "gzip":
+      case "deflate":
+        content = CompressingInputStream.forEncoding(body, op, -1);
+        length = -1;
+        break;
+      case "gunzip":
+        content = DecompressingInputStream.forEncoding(body, "gzip", MAX_DECOMPRESSION_RATIO);
+        length = -1;
+        break;
+      case "inflate":
+        content = DecompressingInputStream.forEncoding(body, "deflate", MAX_DECOMPRESSION_RATIO);
+        length = -1;
+        break;
+      default:
+        throw new IllegalStateException(String.format("unsupported op: %s", op));
+    }
+    String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+    sendStream(
+        exchange,
+        (contentType != null) ? contentType : "application/octet-stream",
+        content,
+        length);
+  }
+}
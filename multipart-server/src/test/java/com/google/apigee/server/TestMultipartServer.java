@@ -0,0 +1,326 @@
+// Copyright 2026 Google LLC.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ------------------------------------------------------------------
+
+package com.google.apigee.server;
+
+import com.google.apigee.multipartform.FormIndex;
+import com.google.apigee.multipartform.MultipartForm;
+import com.google.apigee.multipartform.MultipartParser;
+import com.google.apigee.multipartform.Part;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class TestMultipartServer {
+  private static final String BOUNDARY = "--------------------SERVER0123";
+  private MultipartServer server;
+  private Path resourceDir;
+
+  @BeforeClass
+  public void startServer() throws Exception {
+    resourceDir = Files.createTempDirectory("server");
+    server = MultipartServer.start(new InetSocketAddress("127.0.0.1", 0), 2, 4, resourceDir);
+  }
+
+  @AfterClass
+  public void stopServer() throws Exception {
+    server.stop(0);
+    Files.delete(resourceDir);
+  }
+
+  private static class Response {
+    int status;
+    String contentType;
+    byte[] body;
+  }
+
+  private static byte[] readAll(InputStream in) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    if (in != null) {
+      try (InputStream is = in) {
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = is.read(buf, 0, buf.length)) != -1) {
+          out.write(buf, 0, n);
+        }
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static Response send(
+      int port, String method, String path, String contentType, byte[] body) throws Exception {
+    URL url = new URL("http://127.0.0.1:" + port + path);
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod(method);
+    if (body != null) {
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", contentType);
+      connection.setFixedLengthStreamingMode(body.length);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body);
+      }
+    }
+    Response response = new Response();
+    response.status = connection.getResponseCode();
+    response.contentType = connection.getContentType();
+    response.body =
+        readAll(
+            (response.status < 400) ? connection.getInputStream() : connection.getErrorStream());
+    return response;
+  }
+
+  private Response post(String path, String contentType, byte[] body) throws Exception {
+    return send(server.getPort(), "POST", path, contentType, body);
+  }
+
+  private static byte[] text(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    new Random(length).nextBytes(bytes);
+    return bytes;
+  }
+
+  private static JsonObject json(byte[] body) {
+    try (JsonReader reader =
+        Json.createReader(new StringReader(new String(body, StandardCharsets.UTF_8)))) {
+      return reader.readObject();
+    }
+  }
+
+  private static FormIndex index(Response response) {
+    return FormIndex.build(
+        response.body, response.body.length, MultipartParser.boundaryOf(response.contentType));
+  }
+
+  @Test
+  public void parse_SummarizesParts() throws Exception {
+    List<Part> parts = new ArrayList<Part>();
+    parts.add(new Part("greeting").withContentType("text/plain").withPartContent(text("hello")));
+    parts.add(
+        new Part("data")
+            .withContentType("application/octet-stream")
+            .withFileName("data.bin")
+            .withPartContent(randomBytes(100000)));
+    byte[] form = readAll(new MultipartForm(BOUNDARY, parts).openStream());
+
+    Response response =
+        post("/parse?visitors=crc32c", "multipart/form-data; boundary=" + BOUNDARY, form);
+    Assert.assertEquals(response.status, 200);
+    JsonArray summary = json(response.body).getJsonArray("parts");
+    Assert.assertEquals(summary.size(), 2);
+    JsonObject greeting = summary.getJsonObject(0);
+    Assert.assertEquals(greeting.getString("name"), "greeting");
+    Assert.assertEquals(greeting.getString("content-type"), "text/plain");
+    Assert.assertEquals(greeting.getInt("size"), 5);
+    Assert.assertFalse(greeting.containsKey("filename"), "filename");
+    Assert.assertTrue(greeting.containsKey("crc32c"), "crc32c");
+    JsonObject data = summary.getJsonObject(1);
+    Assert.assertEquals(data.getString("filename"), "data.bin");
+    Assert.assertEquals(data.getInt("size"), 100000);
+  }
+
+  @Test
+  public void parse_NotMultipart() throws Exception {
+    Response response = post("/parse", "text/plain", text("hello"));
+    Assert.assertEquals(response.status, 400);
+    Assert.assertEquals(
+        new String(response.body, StandardCharsets.UTF_8).trim(),
+        "content-type does not contain multipart/form-data");
+  }
+
+  @Test
+  public void parse_MethodNotAllowed() throws Exception {
+    Response response = send(server.getPort(), "GET", "/parse", null, null);
+    Assert.assertEquals(response.status, 405);
+  }
+
+  @Test
+  public void create_SinglePart() throws Exception {
+    byte[] content = randomBytes(200000);
+    Response response =
+        post("/create?name=doc&filename=doc.pdf&boundary=" + BOUNDARY, "application/pdf", content);
+    Assert.assertEquals(response.status, 200);
+    Assert.assertEquals(response.contentType, "multipart/form-data; boundary=" + BOUNDARY);
+    FormIndex index = index(response);
+    Assert.assertEquals(index.getParts().size(), 1);
+    FormIndex.Entry doc = index.get("doc");
+    Assert.assertEquals(doc.getFileName(), "doc.pdf");
+    Assert.assertEquals(doc.getContentType(), "application/pdf");
+    Assert.assertEquals(index.content(doc).toByteArray(), content);
+  }
+
+  @Test
+  public void create_FromDescriptor() throws Exception {
+    Path file = resourceDir.resolve("attachment.bin");
+    Path notice = resourceDir.resolve("notice.txt");
+    try {
+      byte[] content = randomBytes(50000);
+      Files.write(file, content);
+      Files.write(notice, text("This content is served from the resource directory.\n"));
+      String descriptor =
+          "{\n"
+              + "  \"attachment\" : {\n"
+              + "    \"content-resource\" : \"file:attachment.bin\",\n"
+              + "    \"content-type\" : \"application/octet-stream\",\n"
+              + "    \"file-name\" : \"attachment.bin\"\n"
+              + "  },\n"
+              + "  \"notice\" : {\n"
+              + "    \"content-resource\" : \"notice.txt\",\n"
+              + "    \"content-type\" : \"text/plain\"\n"
+              + "  }\n"
+              + "}\n";
+      Response response = post("/create", "application/json", text(descriptor));
+      Assert.assertEquals(response.status, 200);
+      FormIndex index = index(response);
+      Assert.assertEquals(index.getParts().size(), 2);
+      Assert.assertEquals(index.content(index.get("attachment")).toByteArray(), content);
+      Assert.assertEquals(index.get("attachment").getFileName(), "attachment.bin");
+      Assert.assertEquals(
+          new String(index.content(index.get("notice")).toByteArray(), StandardCharsets.UTF_8)
+              .trim(),
+          "This content is served from the resource directory.");
+    } finally {
+      Files.delete(file);
+      Files.delete(notice);
+    }
+  }
+
+  private Response createFromResource(String resource) throws Exception {
+    String descriptor =
+        "{ \"a\" : { \"content-resource\" : \"" + resource + "\", \"content-type\" : \"x/y\" } }";
+    return post("/create", "application/json", text(descriptor));
+  }
+
+  @Test
+  public void create_ResourceNotFound() throws Exception {
+    Response response = createFromResource("file:no/such/file");
+    Assert.assertEquals(response.status, 400);
+    Assert.assertEquals(
+        new String(response.body, StandardCharsets.UTF_8).trim(),
+        "part a: resource file:no/such/file not found");
+  }
+
+  @Test
+  public void create_ResourceOutsideResourceDir() throws Exception {
+    for (String resource : new String[] {"file:../server.bin", "file:/etc/hosts", "/etc/hosts"}) {
+      Response response = createFromResource(resource);
+      Assert.assertEquals(response.status, 400, resource);
+      Assert.assertEquals(
+          new String(response.body, StandardCharsets.UTF_8).trim(),
+          "part a: resource " + resource + " is outside the resource directory");
+    }
+  }
+
+  @Test
+  public void create_ClasspathResourceRefused() throws Exception {
+    Response response =
+        createFromResource("classpath:com/google/apigee/server/CreateHandler.class");
+    Assert.assertEquals(response.status, 400);
+    Assert.assertEquals(
+        new String(response.body, StandardCharsets.UTF_8).trim(),
+        "part a: classpath resources are not served");
+  }
+
+  // Sends the headers of a request whose body never arrives, so that it holds a thread.
+  private static Socket stalledRequest(int port) throws Exception {
+    Socket socket = new Socket("127.0.0.1", port);
+    socket
+        .getOutputStream()
+        .write(
+            text(
+                "POST /transform?op=base64-encode HTTP/1.1\r\n"
+                    + "Host: 127.0.0.1\r\n"
+                    + "Content-Type: application/octet-stream\r\n"
+                    + "Content-Length: 1000\r\n\r\n"));
+    socket.getOutputStream().flush();
+    Thread.sleep(200);
+    return socket;
+  }
+
+  @Test
+  public void busy_RespondsWith503() throws Exception {
+    MultipartServer busy = MultipartServer.start(new InetSocketAddress("127.0.0.1", 0), 1, 1);
+    try (Socket running = stalledRequest(busy.getPort());
+        Socket waiting = stalledRequest(busy.getPort())) {
+      Response response =
+          send(busy.getPort(), "POST", "/transform?op=base64-encode", "text/plain", text("hi"));
+      Assert.assertEquals(response.status, 503);
+      Assert.assertEquals(
+          new String(response.body, StandardCharsets.UTF_8).trim(), "the server is busy");
+    } finally {
+      busy.stop(0);
+    }
+  }
+
+  @Test
+  public void transform_Base64RoundTrip() throws Exception {
+    byte[] content = randomBytes(30001);
+    Response encoded = post("/transform?op=base64-encode", "application/octet-stream", content);
+    Assert.assertEquals(encoded.status, 200);
+    Assert.assertEquals(encoded.body, Base64.getEncoder().encode(content));
+    Response decoded =
+        post("/transform?op=base64-decode", "application/octet-stream", encoded.body);
+    Assert.assertEquals(decoded.status, 200);
+    Assert.assertEquals(decoded.body, content);
+  }
+
+  @Test
+  public void transform_GzipRoundTrip() throws Exception {
+    // compressible, but within the decompression ratio limit
+    StringBuilder lines = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      lines.append("line ").append(i).append('\n');
+    }
+    byte[] content = text(lines.toString());
+    Response compressed = post("/transform?op=gzip", "text/plain", content);
+    Assert.assertEquals(compressed.status, 200);
+    Assert.assertTrue(compressed.body.length < content.length / 2, "compressed");
+    Response inflated = post("/transform?op=gunzip", "text/plain", compressed.body);
+    Assert.assertEquals(inflated.body, content);
+  }
+
+  @Test
+  public void transform_UnsupportedOp() throws Exception {
+    Response response = post("/transform?op=rot13", "text/plain", text("hello"));
+    Assert.assertEquals(response.status, 400);
+    Assert.assertEquals(
+        new String(response.body, StandardCharsets.UTF_8).trim(), "unsupported op: rot13");
+  }
+}